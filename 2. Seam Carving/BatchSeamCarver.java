@@ -0,0 +1,280 @@
+/* *****************************************************************************
+ *  Topic:    Batch Seam Carving
+ *            Carves many independent images on a fixed pool of workers. Every
+ *            worker keeps its own seam-search buffers and reuses them for all
+ *            of its images, and jobs are only admitted while the estimated
+ *            memory of the images in flight and of the kept buffers fits a
+ *            configured budget, so the producer blocks instead of the heap
+ *            overflowing. Files that are not images are skipped.
+ *  @author:  Ying Chu
+ **************************************************************************** */
+import edu.princeton.cs.algs4.Picture;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BatchSeamCarver {
+    // decoded picture, rgb and energy copies, and the carved output
+    private static final int BYTES_PER_PIXEL = 4 + 4 + 8 + 4;
+    // seam-search buffers: matrix, energy sums and back pointers
+    private static final int SCRATCH_BYTES_PER_PIXEL = 8 + 8 + 4;
+    // how long the producer waits before reclaiming the buffers of idle workers
+    private static final long RECLAIM_MILLIS = 10;
+    private static final int KB = 1024;
+
+    private final int workers;
+    private final int budgetKB;
+
+    // seam-search buffers kept between images, with the part of the budget they hold
+    private static class Buffers {
+        private final SeamCarver.Scratch scratch = new SeamCarver.Scratch();
+        private final int costKB;
+
+        private Buffers(int costKB) {
+            this.costKB = costKB;
+        }
+    }
+
+    // one image to carve
+    public static class Job {
+        private final String input;
+        private final String output;
+        private final int targetWidth;
+        private final int targetHeight;
+
+        // carve the picture in input to at most targetWidth-by-targetHeight and save it to output
+        public Job(String input, String output, int targetWidth, int targetHeight) {
+            if (input == null || output == null) {
+                throw new IllegalArgumentException("file name is null");
+            }
+            if (targetWidth < 1 || targetHeight < 1) {
+                throw new IllegalArgumentException("target size not valid");
+            }
+            this.input = input;
+            this.output = output;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+        }
+    }
+
+    // throughput and time spent in each stage, summed over all workers
+    public static class Stats {
+        private final LongAdder images = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder decodeNanos = new LongAdder();
+        private final LongAdder energyNanos = new LongAdder();
+        private final LongAdder carveNanos = new LongAdder();
+        private final LongAdder encodeNanos = new LongAdder();
+        private long wallNanos;
+
+        // number of images carved
+        public long images() {
+            return images.sum();
+        }
+
+        // number of files skipped because they could not be read as images
+        public long skipped() {
+            return skipped.sum();
+        }
+
+        // images carved per second of wall-clock time
+        public double imagesPerSecond() {
+            return wallNanos == 0 ? 0 : images() * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            long n = Math.max(1, images());
+            return String.format("%d images in %.2f s (%.1f images/sec), %d skipped; "
+                                         + "per image: decode %.2f ms, energy %.2f ms, "
+                                         + "carve %.2f ms, encode %.2f ms",
+                                 images(), wallNanos / 1e9, imagesPerSecond(), skipped(),
+                                 decodeNanos.sum() / 1e6 / n, energyNanos.sum() / 1e6 / n,
+                                 carveNanos.sum() / 1e6 / n, encodeNanos.sum() / 1e6 / n);
+        }
+    }
+
+    // carve on the given number of workers, keeping images in flight within budgetBytes
+    public BatchSeamCarver(int workers, long budgetBytes) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("number of workers must be positive");
+        }
+        if (budgetBytes < KB) {
+            throw new IllegalArgumentException("memory budget too small");
+        }
+        this.workers = workers;
+        this.budgetKB = (int) Math.min(Integer.MAX_VALUE, budgetBytes / KB);
+    }
+
+    // carve every image in inputDir to at most targetWidth-by-targetHeight, saving to outputDir
+    public Stats carveDirectory(String inputDir, String outputDir, int targetWidth, int targetHeight) {
+        File[] files = new File(inputDir).listFiles(File::isFile);
+        if (files == null) {
+            throw new IllegalArgumentException("not a directory: " + inputDir);
+        }
+        new File(outputDir).mkdirs();
+
+        List<Job> jobs = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            String base = dot < 0 ? name : name.substring(0, dot);
+            jobs.add(new Job(file.getPath(), new File(outputDir, base + ".png").getPath(),
+                             targetWidth, targetHeight));
+        }
+        return carveAll(jobs.iterator());
+    }
+
+    // carve every job of the stream, skipping inputs that are not images;
+    // blocks while the memory budget is used up
+    public Stats carveAll(Iterator<Job> jobs) {
+        if (jobs == null) {
+            throw new IllegalArgumentException("jobs is null");
+        }
+
+        Stats stats = new Stats();
+        Semaphore budget = new Semaphore(budgetKB);
+        // buffers of workers between images; they keep their part of the budget
+        ConcurrentLinkedQueue<Buffers> idle = new ConcurrentLinkedQueue<>();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long start = System.nanoTime();
+        try {
+            while (jobs.hasNext() && failure.get() == null) {
+                Job job = jobs.next();
+                long pixels = pixels(job.input);
+                if (pixels < 0) {
+                    stats.skipped.increment();
+                    continue;
+                }
+                // an image larger than the whole budget runs alone
+                int cost = (int) Math.min(budgetKB, pixels * BYTES_PER_PIXEL / KB + 1);
+                int scratchNeed = (int) Math.min(Integer.MAX_VALUE,
+                                                 pixels * SCRATCH_BYTES_PER_PIXEL / KB + 1);
+                int scratchCost = Math.min(budgetKB - cost, scratchNeed);
+                acquire(budget, cost + scratchCost, idle);
+                pool.execute(() -> {
+                    // reuse idle buffers that already cover this image, otherwise keep the
+                    // new buffers and the budget reserved for them
+                    Buffers buffers = idle.poll();
+                    int release = cost;
+                    if (buffers != null && buffers.costKB >= scratchNeed) {
+                        release += scratchCost;
+                    } else {
+                        if (buffers != null) budget.release(buffers.costKB);
+                        buffers = new Buffers(scratchCost);
+                    }
+                    try {
+                        carve(job, buffers.scratch, stats);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        // buffers grown past their reservation are not kept, so idle
+                        // buffers never hold more than their part of the budget
+                        if (buffers.costKB >= scratchNeed) {
+                            idle.add(buffers);
+                        } else {
+                            budget.release(buffers.costKB);
+                        }
+                        budget.release(release);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        stats.wallNanos = System.nanoTime() - start;
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return stats;
+    }
+
+    // take permits from the budget, freeing the buffers of idle workers while it is short
+    private static void acquire(Semaphore budget, int permits, ConcurrentLinkedQueue<Buffers> idle) {
+        try {
+            while (!budget.tryAcquire(permits, RECLAIM_MILLIS, TimeUnit.MILLISECONDS)) {
+                Buffers buffers = idle.poll();
+                if (buffers != null) budget.release(buffers.costKB);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void carve(Job job, SeamCarver.Scratch scratch, Stats stats) {
+        long t0 = System.nanoTime();
+        Picture picture = new Picture(job.input);
+        long t1 = System.nanoTime();
+        SeamCarver carver = new SeamCarver(picture, scratch);
+        picture = null; // let the decoded image go before carving
+        long t2 = System.nanoTime();
+        while (carver.width() > job.targetWidth) {
+            carver.removeVerticalSeam(carver.findVerticalSeam());
+        }
+        while (carver.height() > job.targetHeight) {
+            carver.removeHorizontalSeam(carver.findHorizontalSeam());
+        }
+        long t3 = System.nanoTime();
+        carver.picture().save(job.output);
+        long t4 = System.nanoTime();
+
+        stats.decodeNanos.add(t1 - t0);
+        stats.energyNanos.add(t2 - t1);
+        stats.carveNanos.add(t3 - t2);
+        stats.encodeNanos.add(t4 - t3);
+        stats.images.increment();
+    }
+
+    // number of pixels of the image, read from its header without decoding the pixels;
+    // -1 if the file cannot be read as an image
+    private static long pixels(String filename) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new File(filename))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return -1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // carve all images in args[0] to args[2]-by-args[3] pixels and save them in args[1],
+    // using args[4] workers (default: one per core) and args[5] megabytes (default: 256)
+    public static void main(String[] args) {
+        int workers = args.length > 4 ? Integer.parseInt(args[4])
+                                      : Runtime.getRuntime().availableProcessors();
+        long budget = (args.length > 5 ? Long.parseLong(args[5]) : 256) * KB * KB;
+        BatchSeamCarver batch = new BatchSeamCarver(workers, budget);
+        Stats stats = batch.carveDirectory(args[0], args[1],
+                                           Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        System.out.println(stats);
+    }
+}
@@ -9,30 +9,51 @@
  *  @auther:  Ying Chu
  **************************************************************************** */
 import edu.princeton.cs.algs4.Picture;
-import java.awt.Color;
 
 public class SeamCarver {
-    private Picture pic;
+    private static final double BORDER_ENERGY = 1000;
     private int[][] picColor;
     private double[][] energy;
     private int width;
     private int height;
+    private final Scratch scratch;
+
+    // flat buffers used by the seam search, grown on demand and reused across seams;
+    // a single Scratch may be shared by carvers that run on the same thread
+    static class Scratch {
+        private double[] matrix = new double[0];
+        private double[] energySum = new double[0];
+        private int[] backTracker = new int[0];
+
+        private void ensure(int n) {
+            if (matrix.length < n) {
+                matrix = new double[n];
+                energySum = new double[n];
+                backTracker = new int[n];
+            }
+        }
+    }
 
     // create a seam carver object based on the given picture
     public SeamCarver(Picture picture) {
+        this(picture, new Scratch());
+    }
+
+    // create a seam carver that searches seams in the given scratch buffers
+    SeamCarver(Picture picture, Scratch scratch) {
         if (picture == null) {
             throw new IllegalArgumentException("given picture is null");
         }
-        this.pic = picture;
-        this.picColor = new int[width()][height()];
-        energy = new double[width()][height()];
+        this.scratch = scratch;
         width = picture.width();
         height = picture.height();
+        this.picColor = new int[width()][height()];
+        energy = new double[width()][height()];
 
         // set the color of each pixel
         for (int i = 0; i < width(); i++) {
             for (int j = 0; j < height(); j++) {
-                picColor[i][j] = pic.getRGB(i, j);
+                picColor[i][j] = picture.getRGB(i, j);
             }
         }
 
@@ -44,6 +65,17 @@ public class SeamCarver {
         }
     }
 
+    // create a seam carver over pixels whose energy is already known,
+    // used by SeamCarverSequence to skip the full energy pass on each frame;
+    // both arrays are indexed [x][y] and are taken over, not copied
+    SeamCarver(int[][] picColor, double[][] energy) {
+        this.picColor = picColor;
+        this.energy = energy;
+        this.scratch = new Scratch();
+        width = picColor.length;
+        height = picColor[0].length;
+    }
+
     // current picture
     public Picture picture () {
         Picture picture = new Picture(width(), height());
@@ -76,116 +108,150 @@ public class SeamCarver {
     }
 
     private double countEnergy(int x, int y){
+        return countEnergy(picColor, width, height, x, y);
+    }
+
+    // energy of pixel (x, y) in a [x][y] rgb matrix of the given size
+    static double countEnergy(int[][] rgb, int w, int h, int x, int y) {
 
         // count energy of the pixel
-        if (x == 0 || x == width() - 1 || y == 0 || y == height() - 1) {
-            return 1000; // border
-        }
-
-        // calculate x difference
-        Color leftC = pic.get(x - 1, y);
-        Color rightC = pic.get(x + 1, y);
-        double xR = rightC.getRed() - leftC.getRed();
-        double xG = rightC.getGreen() - leftC.getGreen();
-        double xB = rightC.getBlue() - leftC.getBlue();
-        double xDiff = xR * xR + xG * xG + xB * xB;
-
-        // calculate y difference
-        Color aboveC = pic.get(x, y - 1);
-        Color belowC = pic.get(x, y + 1);
-        double yR = belowC.getRed() - aboveC.getRed();
-        double yG = belowC.getGreen() - aboveC.getGreen();
-        double yB = belowC.getBlue() - aboveC.getBlue();
-        double yDiff = yR * yR + yG * yG + yB * yB;
+        if (x == 0 || x == w - 1 || y == 0 || y == h - 1) {
+            return BORDER_ENERGY; // border
+        }
+
+        // calculate x difference and y difference
+        double xDiff = gradient(rgb[x - 1][y], rgb[x + 1][y]);
+        double yDiff = gradient(rgb[x][y - 1], rgb[x][y + 1]);
 
         return Math.sqrt(xDiff + yDiff);
     }
 
+    // squared difference of two packed rgb colors
+    private static double gradient(int c1, int c2) {
+        int r = ((c2 >> 16) & 0xFF) - ((c1 >> 16) & 0xFF);
+        int g = ((c2 >> 8) & 0xFF) - ((c1 >> 8) & 0xFF);
+        int b = (c2 & 0xFF) - (c1 & 0xFF);
+        return r * r + g * g + b * b;
+    }
+
 
 
     // sequence of indices for horizontal seam
     public int[] findHorizontalSeam() {
-        double[][] ematrix = new double[height()][width()];
-        for (int i = 0; i < height(); i++)
-            for (int j = 0; j < width(); j++) {
-                ematrix[i][j] = energy(j, i);
-            }
-        return findSeam(ematrix);
+        return findHorizontalSeam(null, 0);
     }
 
+    // sequence of indices for vertical seam
     public int[] findVerticalSeam() {
-        double[][] ematrix = new double[width()][height()];
-        for (int i = 0; i < width(); i++)
-            for (int j = 0; j < height(); j++) {
-                ematrix[i][j] = energy(i, j);
+        return findVerticalSeam(null, 0);
+    }
+
+    // horizontal seam restricted to rows within radius of the given seam
+    int[] findHorizontalSeam(int[] window, int radius) {
+        // a horizontal seam is a vertical seam of the transposed picture,
+        // whose rows are exactly the columns of the energy matrix
+        scratch.ensure(width() * height());
+        for (int x = 0; x < width(); x++) {
+            System.arraycopy(energy[x], 0, scratch.matrix, x * height(), height());
+        }
+        return findSeam(scratch, height(), width(), window, radius);
+    }
+
+    // vertical seam restricted to columns within radius of the given seam
+    int[] findVerticalSeam(int[] window, int radius) {
+        scratch.ensure(width() * height());
+        for (int x = 0; x < width(); x++) {
+            for (int y = 0; y < height(); y++) {
+                scratch.matrix[y * width() + x] = energy[x][y];
             }
-        return findSeam(ematrix);
+        }
+        return findSeam(scratch, width(), height(), window, radius);
     }
 
-    // sequence of indices for vertical seam
-    private int[] findSeam(double[][] energy) {
+    // lowest energy path from the top to the bottom of the w-by-h energy matrix held
+    // row by row in scratch.matrix; if window is not null, only columns within radius
+    // of window[row] are searched
+    private static int[] findSeam(Scratch scratch, int w, int h, int[] window, int radius) {
 
-        double[][] energySum = new double[width][height]; // used to identify minimum energy sum
-        int[][] backTracker = new int[width][height]; // layer above
+        double[] energy = scratch.matrix;
+        double[] energySum = scratch.energySum; // used to identify minimum energy sum
+        int[] backTracker = scratch.backTracker; // layer above
         double minEnergy;
 
         // loop over the energy matrix and find the lowest energy path
         for (int y = 0; y < h; y++) { // row
-            for (int x = 0; x < w; x++) { // column
+            int row = y * w;
+            int above = row - w;
+            int lo = 0;
+            int hi = w - 1;
+            if (window != null) {
+                lo = Math.max(0, window[y] - radius);
+                hi = Math.min(w - 1, window[y] + radius);
+                // the window of the next row may reach two columns past this one
+                for (int x = Math.max(lo - 2, 0); x < lo; x++) energySum[row + x] = Double.POSITIVE_INFINITY;
+                for (int x = hi + 1; x <= Math.min(hi + 2, w - 1); x++) energySum[row + x] = Double.POSITIVE_INFINITY;
+            }
+            for (int x = lo; x <= hi; x++) { // column
                 if (y == 0) {
-                    energySum[x][y] = energy[x][y];
-                    backTracker[x][y] = x;
+                    energySum[row + x] = energy[row + x];
+                    backTracker[row + x] = x;
                 }
                 else {
-                    if (x == 0) {
-                        minEnergy = Math.min(energySum[x][y - 1], energySum[x + 1][y - 1]);
-                        if (minEnergy == energySum[x][y - 1]) {
-                            backTracker[x][y] = x;
+                    if (w == 1) {
+                        minEnergy = energySum[above + x];
+                        backTracker[row + x] = x;
+                    } else if (x == 0) {
+                        minEnergy = Math.min(energySum[above + x], energySum[above + x + 1]);
+                        if (minEnergy == energySum[above + x]) {
+                            backTracker[row + x] = x;
                         }
                         else {
-                            backTracker[x][y] = x + 1;
+                            backTracker[row + x] = x + 1;
                         }
                     } else if (x == (w - 1)) {
-                        minEnergy = Math.min(energySum[x - 1][y - 1], energySum[x][y - 1]);
-                        if (minEnergy == energySum[x - 1][y - 1]) {
-                            backTracker[x][y] = x - 1;
+                        minEnergy = Math.min(energySum[above + x - 1], energySum[above + x]);
+                        if (minEnergy == energySum[above + x - 1]) {
+                            backTracker[row + x] = x - 1;
                         }
                         else { // x
-                            backTracker[x][y] = x;
+                            backTracker[row + x] = x;
                         }
                     } else {
-                        minEnergy = Math.min(Math.min(energySum[x - 1][y - 1], energySum[x][y - 1]),
-                                             energySum[x + 1][y - 1]);
-                        if (minEnergy == energySum[x - 1][y - 1]) {
-                            backTracker[x][y] = x - 1;
+                        minEnergy = Math.min(Math.min(energySum[above + x - 1], energySum[above + x]),
+                                             energySum[above + x + 1]);
+                        if (minEnergy == energySum[above + x - 1]) {
+                            backTracker[row + x] = x - 1;
                         }
-                        else if (minEnergy == energySum[x][y - 1]) {
-                            backTracker[x][y] = x;
+                        else if (minEnergy == energySum[above + x]) {
+                            backTracker[row + x] = x;
                         }
-                        else if (minEnergy == energySum[x + 1][y - 1]) {
-                            backTracker[x][y] = x + 1;
+                        else {
+                            backTracker[row + x] = x + 1;
                         }
                     }
-                    energySum[x][y] = energy[x][y] + minEnergy;
+                    energySum[row + x] = energy[row + x] + minEnergy;
                 }
             }
         }
 
         // find the minimum energy sum in last row
-        double minSum = energySum[0][h - 1];
-        int minIndex = 0;
-        for (int x = 1; x < energySum.length; x++) {
-            if (minSum > energySum[x][h - 1]) {
+        int last = (h - 1) * w;
+        int lo = window == null ? 0 : Math.max(0, window[h - 1] - radius);
+        int hi = window == null ? w - 1 : Math.min(w - 1, window[h - 1] + radius);
+        double minSum = energySum[last + lo];
+        int minIndex = lo;
+        for (int x = lo + 1; x <= hi; x++) {
+            if (minSum > energySum[last + x]) {
                 minIndex = x;
-                minSum = energySum[x][h - 1];
+                minSum = energySum[last + x];
             }
         }
 
         // back-track
-        int[] seam = new int[height];
-        seam[height - 1] = minIndex;
-        for (int y = height - 2; y >= 0; y--) {
-            seam[y] = backTracker[seam[y + 1]][y + 1];
+        int[] seam = new int[h];
+        seam[h - 1] = minIndex;
+        for (int y = h - 2; y >= 0; y--) {
+            seam[y] = backTracker[(y + 1) * w + seam[y + 1]];
         }
 
         return seam;
@@ -197,29 +263,26 @@ public class SeamCarver {
             throw new IllegalArgumentException("seam not valid");
         }
 
-        if (pic.height() <= 1) {
+        if (height() <= 1) {
             throw new IllegalArgumentException("height of the picture is less than or equal to 1");
         }
+        checkSeam(seam, height());
 
+        // pixels below the seam move up by one row
+        for (int x = 0; x < width(); x++) {
+            System.arraycopy(picColor[x], seam[x] + 1, picColor[x], seam[x], height() - seam[x] - 1);
+            System.arraycopy(energy[x], seam[x] + 1, energy[x], seam[x], height() - seam[x] - 1);
+        }
+        height--;
 
-        Picture newPic = new Picture(width(), height() - 1);
-        Color color;
-        int row;
+        // only pixels whose neighbors changed need a new energy
         for (int x = 0; x < width(); x++) {
-            if (seam[x] < 0 || seam[x] > height() - 1 || (x > 0 && Math.abs(seam[x] - seam[x - 1]) > 1)) {
-                throw new IllegalArgumentException("seam not valid");
-            }
-            for (int y = 0; y < height(); y++) {
-                if (y == seam[x]) continue;
-                color = pic.get(x, y);
-                row = y;
-                if (y > seam[x]) {
-                    row--;
-                }
-                newPic.set(x, row, color);
+            int lo = Math.min(seam[x], Math.min(seam[Math.max(x - 1, 0)], seam[Math.min(x + 1, width() - 1)])) - 1;
+            int hi = Math.max(seam[x], Math.max(seam[Math.max(x - 1, 0)], seam[Math.min(x + 1, width() - 1)]));
+            for (int y = Math.max(lo, 0); y <= Math.min(hi, height() - 1); y++) {
+                energy[x][y] = countEnergy(x, y);
             }
         }
-        pic = newPic;
     }
 
     // remove vertical seam from current picture
@@ -229,27 +292,49 @@ public class SeamCarver {
             throw new IllegalArgumentException("seam not valid");
         }
 
-        if (pic.width() <= 1) {
+        if (width() <= 1) {
             throw new IllegalArgumentException("width of the picture is less than or equal to 1");
         }
+        checkSeam(seam, width());
 
-        Picture newPic = new Picture(width() - 1, height());
-        Color color;
-        int col;
+        // pixels right of the seam move left by one column
         for (int y = 0; y < height(); y++) {
-            if (seam[y] < 0 || seam[y] > width() - 1 || (y > 0 && Math.abs(seam[y] - seam[y - 1]) > 1)) {
-                throw new IllegalArgumentException("seam not valid");
+            for (int x = seam[y]; x < width() - 1; x++) {
+                picColor[x][y] = picColor[x + 1][y];
+                energy[x][y] = energy[x + 1][y];
             }
-            for (int x = 0; x < width(); x++) {
-                if (x == seam[y]) continue;
-                color = pic.get(x, y);
-                col = x;
-                if (x > seam[y]) {
-                    col--;
-                }
-                newPic.set(col, y, color);
+        }
+        width--;
+        picColor = shrink(picColor, width);
+        energy = shrink(energy, width);
+
+        // only pixels whose neighbors changed need a new energy
+        for (int y = 0; y < height(); y++) {
+            int lo = Math.min(seam[y], Math.min(seam[Math.max(y - 1, 0)], seam[Math.min(y + 1, height() - 1)])) - 1;
+            int hi = Math.max(seam[y], Math.max(seam[Math.max(y - 1, 0)], seam[Math.min(y + 1, height() - 1)]));
+            for (int x = Math.max(lo, 0); x <= Math.min(hi, width() - 1); x++) {
+                energy[x][y] = countEnergy(x, y);
             }
         }
-        pic = newPic;
     }
-}
\ No newline at end of file
+
+    private static void checkSeam(int[] seam, int range) {
+        for (int i = 0; i < seam.length; i++) {
+            if (seam[i] < 0 || seam[i] > range - 1 || (i > 0 && Math.abs(seam[i] - seam[i - 1]) > 1)) {
+                throw new IllegalArgumentException("seam not valid");
+            }
+        }
+    }
+
+    private static int[][] shrink(int[][] a, int n) {
+        int[][] b = new int[n][];
+        System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+
+    private static double[][] shrink(double[][] a, int n) {
+        double[][] b = new double[n][];
+        System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+}
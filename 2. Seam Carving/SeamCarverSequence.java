@@ -0,0 +1,236 @@
+/* *****************************************************************************
+ *  Topic:    Seam Carving for Frame Sequences
+ *            Carves a sequence of equally sized frames (e.g. a short video clip)
+ *            down to the same target size. Consecutive frames are mostly alike,
+ *            so each frame only recomputes the energy of pixels that changed
+ *            since the previous frame, and each seam is searched within a narrow
+ *            window around the matching seam of the previous frame, which also
+ *            keeps the carved result stable from frame to frame.
+ *  @author:  Ying Chu
+ **************************************************************************** */
+import edu.princeton.cs.algs4.Picture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public class SeamCarverSequence {
+    private static final int DEFAULT_RADIUS = 8;
+    // above this fraction of changed pixels the frame is treated as a scene cut
+    private static final double SCENE_CUT = 0.5;
+
+    private final int width;
+    private final int height;
+    private final int verticalSeams;
+    private final int horizontalSeams;
+    private final int radius;
+
+    private Frame lastFrame;     // energy of the previous frame
+    private Carving lastCarving; // seams of the previous frame
+
+    // full-size pixels and energy of one frame
+    private static class Frame {
+        private final int[][] rgb;
+        private final double[][] energy;
+        private final boolean sceneCut;
+
+        private Frame(int[][] rgb, double[][] energy, boolean sceneCut) {
+            this.rgb = rgb;
+            this.energy = energy;
+            this.sceneCut = sceneCut;
+        }
+    }
+
+    // carved picture of one frame and the seams removed from it, in removal order
+    private static class Carving {
+        private final Picture picture;
+        private final int[][] vertical;
+        private final int[][] horizontal;
+
+        private Carving(Picture picture, int[][] vertical, int[][] horizontal) {
+            this.picture = picture;
+            this.vertical = vertical;
+            this.horizontal = horizontal;
+        }
+    }
+
+    // carve frames of width-by-height pixels down to targetWidth-by-targetHeight
+    public SeamCarverSequence(int width, int height, int targetWidth, int targetHeight) {
+        this(width, height, targetWidth, targetHeight, DEFAULT_RADIUS);
+    }
+
+    // same as above, searching each seam within radius pixels of the previous frame's seam
+    public SeamCarverSequence(int width, int height, int targetWidth, int targetHeight, int radius) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("frame size not valid");
+        }
+        if (targetWidth < 1 || targetWidth > width || targetHeight < 1 || targetHeight > height) {
+            throw new IllegalArgumentException("target size not valid");
+        }
+        if (radius < 1) {
+            throw new IllegalArgumentException("radius must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.verticalSeams = width - targetWidth;
+        this.horizontalSeams = height - targetHeight;
+        this.radius = radius;
+    }
+
+    // carve the next frame of the sequence
+    public Picture carve(Picture frame) {
+        lastFrame = computeEnergy(lastFrame, frame);
+        lastCarving = carve(lastCarving, lastFrame);
+        return lastCarving.picture;
+    }
+
+    // carve the frames stored in the given files, in order;
+    // decoding, energy and carving of consecutive frames run concurrently
+    public List<Picture> carveAll(Iterable<String> filenames) {
+        if (filenames == null) {
+            throw new IllegalArgumentException("filenames is null");
+        }
+
+        int threads = Math.max(3, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // at most threads + 1 frames are between decoding and carving at any time
+        Semaphore inFlight = new Semaphore(threads + 1);
+        try {
+            // each stage waits only on the same stage of the previous frame,
+            // so frame k is decoded while frame k - 1 computes energy and k - 2 is carved
+            CompletableFuture<Frame> energy = CompletableFuture.completedFuture(lastFrame);
+            CompletableFuture<Carving> carving = CompletableFuture.completedFuture(lastCarving);
+            List<CompletableFuture<Carving>> results = new ArrayList<>();
+            for (String filename : filenames) {
+                inFlight.acquire();
+                CompletableFuture<Picture> decoded =
+                        CompletableFuture.supplyAsync(() -> new Picture(filename), pool);
+                energy = energy.thenCombineAsync(decoded, this::computeEnergy, pool);
+                carving = carving.thenCombineAsync(energy, this::carve, pool);
+                carving.whenComplete((done, failure) -> inFlight.release());
+                results.add(carving);
+            }
+
+            List<Picture> pictures = new ArrayList<>();
+            for (CompletableFuture<Carving> result : results) {
+                pictures.add(result.join().picture);
+            }
+            lastFrame = energy.join();
+            lastCarving = carving.join();
+            return pictures;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // energy of the given frame, recomputed only around pixels that differ from the previous frame
+    private Frame computeEnergy(Frame previous, Picture picture) {
+        if (picture == null) {
+            throw new IllegalArgumentException("given picture is null");
+        }
+        if (picture.width() != width || picture.height() != height) {
+            throw new IllegalArgumentException("frame size does not match the sequence");
+        }
+
+        int[][] rgb = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                rgb[x][y] = picture.getRGB(x, y);
+            }
+        }
+
+        double[][] energy = new double[width][height];
+        if (previous == null) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    energy[x][y] = SeamCarver.countEnergy(rgb, width, height, x, y);
+                }
+            }
+            return new Frame(rgb, energy, true);
+        }
+
+        // a pixel's energy depends on itself and its four neighbors
+        boolean[][] dirty = new boolean[width][height];
+        int changed = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (rgb[x][y] != previous.rgb[x][y]) {
+                    changed++;
+                    dirty[x][y] = true;
+                    if (x > 0) dirty[x - 1][y] = true;
+                    if (x < width - 1) dirty[x + 1][y] = true;
+                    if (y > 0) dirty[x][y - 1] = true;
+                    if (y < height - 1) dirty[x][y + 1] = true;
+                }
+            }
+        }
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                energy[x][y] = dirty[x][y] ? SeamCarver.countEnergy(rgb, width, height, x, y)
+                                           : previous.energy[x][y];
+            }
+        }
+        return new Frame(rgb, energy, changed > SCENE_CUT * width * height);
+    }
+
+    // remove seams from the frame, searching near the previous frame's seams unless the scene cut
+    private Carving carve(Carving previous, Frame frame) {
+        int[][] rgb = new int[width][];
+        double[][] energy = new double[width][];
+        for (int x = 0; x < width; x++) {
+            rgb[x] = frame.rgb[x].clone();
+            energy[x] = frame.energy[x].clone();
+        }
+        SeamCarver carver = new SeamCarver(rgb, energy);
+        boolean windowed = previous != null && !frame.sceneCut;
+
+        int[][] vertical = new int[verticalSeams][];
+        for (int i = 0; i < verticalSeams; i++) {
+            vertical[i] = windowed ? carver.findVerticalSeam(previous.vertical[i], radius)
+                                   : carver.findVerticalSeam();
+            carver.removeVerticalSeam(vertical[i]);
+        }
+
+        int[][] horizontal = new int[horizontalSeams][];
+        for (int i = 0; i < horizontalSeams; i++) {
+            horizontal[i] = windowed ? carver.findHorizontalSeam(previous.horizontal[i], radius)
+                                     : carver.findHorizontalSeam();
+            carver.removeHorizontalSeam(horizontal[i]);
+        }
+
+        return new Carving(carver.picture(), vertical, horizontal);
+    }
+
+    // carve the frames given as command-line arguments to 2/3 of their width,
+    // writing each result next to its input
+    public static void main(String[] args) {
+        Picture first = new Picture(args[0]);
+        SeamCarverSequence sequence = new SeamCarverSequence(
+                first.width(), first.height(), Math.max(1, first.width() * 2 / 3), first.height());
+
+        List<String> filenames = new ArrayList<>();
+        for (String arg : args) filenames.add(arg);
+
+        long start = System.currentTimeMillis();
+        List<Picture> carved = sequence.carveAll(filenames);
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (int i = 0; i < carved.size(); i++) {
+            carved.get(i).save(args[i] + ".carved.png");
+        }
+        System.out.printf("%d frames in %d ms%n", carved.size(), elapsed);
+    }
+}
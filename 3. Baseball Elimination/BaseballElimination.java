@@ -2,24 +2,90 @@
  *  Topic:      Baseball Elimination Problem
  *              Given the standings in a sports division at some point during the
  *              season, determine which teams have been mathematically eliminated
- *              from winning their division.
+ *              from winning their division. The status and certificate of every
+ *              team are computed together on the first query and kept in
+ *              immutable results, so later queries take constant time.
  *  @author:    Ying Chu
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.FlowEdge;
-import edu.princeton.cs.algs4.FlowNetwork;
-import edu.princeton.cs.algs4.FordFulkerson;
 import edu.princeton.cs.algs4.In;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 public class BaseballElimination {
+    private static final int SOURCE = 0;
     private final int teamNum;
     private final List<String> teamList = new ArrayList<String>();
+    private final Map<String, Integer> teamIndex = new HashMap<>(); // name -> position in teamList
     private final int[][] games;
     private final int[] wins, loss, remain;
-    private int flow;
+    private volatile AtomicReferenceArray<Result> results; // per team, null until the first query
+    private volatile Standings standings; // copy of the arrays above read by the accessors
+    // flow networks are only used while holding the lock on this object
+    private final Map<Integer, EliminationFlow> networks = new HashMap<>(); // solved flows kept for updates
+    private final Deque<EliminationFlow> spare = new ArrayDeque<>(); // networks free for reuse
+    private EliminationFlow template; // shared edge structure and game capacities, built on first use
+    private final int[] byWins; // scratch order of teams for the subset test
+    private final LongAdder[] decided = counters(); // per tier
+
+    // tests tried in order on each team, from cheapest to the full max-flow
+    public enum Tier {
+        TRIVIAL,        // another team already has more wins than the team can reach
+        NO_THREAT,      // no other team can reach more wins than the team can
+        SUBSET_AVERAGE, // the teams with the most wins must average more than the team can reach
+        MAX_FLOW
+    }
+
+    // standings as seen by readers; recordResult replaces the whole copy, so a reader
+    // never sees a result half applied
+    private static final class Standings {
+        private final int[] wins, loss, remain;
+        private final int[][] games;
+
+        private Standings(int[] wins, int[] loss, int[] remain, int[][] games) {
+            this.wins = wins.clone();
+            this.loss = loss.clone();
+            this.remain = remain.clone();
+            this.games = new int[games.length][];
+            for (int i = 0; i < games.length; i++) {
+                this.games[i] = games[i].clone();
+            }
+        }
+    }
+
+    // elimination status of one team; immutable once built
+    private static final class Result {
+        private static final Result NOT_ELIMINATED = new Result(false, null);
+
+        private final boolean eliminated;
+        private final Iterable<String> certificate; // null if not eliminated
+
+        private Result(boolean eliminated, List<String> certificate) {
+            this.eliminated = eliminated;
+            this.certificate = certificate == null ? null : Collections.unmodifiableList(certificate);
+        }
+    }
+
+    private static LongAdder[] counters() {
+        LongAdder[] counters = new LongAdder[Tier.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
 
     // create a baseball division from given filename in format specified below
     public BaseballElimination(String filename) {
@@ -31,11 +97,16 @@ public class BaseballElimination {
         wins = new int[teamNum];
         loss = new int[teamNum];
         remain = new int[teamNum];
+        byWins = new int[teamNum];
         in.readLine();
 
         // get all the needed arrays
         for (int i = 0; i < teamNum; i++) {
-            teamList.add(in.readString());
+            String team = in.readString();
+            if (teamIndex.put(team, i) != null) {
+                throw new IllegalArgumentException("duplicate team " + team);
+            }
+            teamList.add(team);
             wins[i] = in.readInt();
             loss[i] = in.readInt();
             remain[i] = in.readInt();
@@ -44,6 +115,25 @@ public class BaseballElimination {
             }
             in.readLine();
         }
+        standings = new Standings(wins, loss, remain, games);
+    }
+
+    // create a baseball division from standings already parsed, e.g. by LeagueElimination;
+    // the arrays are taken over, not copied
+    BaseballElimination(String[] teams, int[] wins, int[] loss, int[] remain, int[][] games) {
+        this.teamNum = teams.length;
+        this.wins = wins;
+        this.loss = loss;
+        this.remain = remain;
+        this.games = games;
+        this.byWins = new int[teamNum];
+        for (int i = 0; i < teamNum; i++) {
+            if (teamIndex.put(teams[i], i) != null) {
+                throw new IllegalArgumentException("duplicate team " + teams[i]);
+            }
+            teamList.add(teams[i]);
+        }
+        standings = new Standings(wins, loss, remain, games);
     }
 
     // number of teams
@@ -57,138 +147,433 @@ public class BaseballElimination {
 
     }
 
+    // id of given team, from 0 to numberOfTeams() - 1 in the order of teams()
+    public int teamId(String team) {
+        if (team == null) {
+            throw new IllegalArgumentException("team is invalid");
+        }
+
+        Integer teamid = teamIndex.get(team);
+        if (teamid == null) {
+            throw new IllegalArgumentException("team is not included");
+        }
+        return teamid;
+    }
+
+    // name of the team with given id
+    public String teamName(int teamid) {
+
+        checkTeam(teamid);
+
+        return teamList.get(teamid);
+    }
+
     // number of wins for given team
     public int wins(String team) {
+        return standings.wins[teamId(team)];
+    }
 
-        checkTeam(team);
+    // number of wins for the team with given id
+    public int wins(int teamid) {
 
-        int teamid = teamList.indexOf(team);
-        return remain[teamid];
+        checkTeam(teamid);
+
+        return standings.wins[teamid];
     }
 
     // number of losses for given team
     public int losses(String team) {
+        return standings.loss[teamId(team)];
+    }
 
-        checkTeam(team);
+    // number of losses for the team with given id
+    public int losses(int teamid) {
 
-        int teamid = teamList.indexOf(team);
-        return loss[teamid];
+        checkTeam(teamid);
+
+        return standings.loss[teamid];
     }
 
     // number of remaining games for given team
     public int remaining(String team) {
+        return standings.remain[teamId(team)];
+    }
 
-        checkTeam(team);
+    // number of remaining games for the team with given id
+    public int remaining(int teamid) {
 
-        int teamid = teamList.indexOf(team);
-        return remain[teamid];
+        checkTeam(teamid);
 
+        return standings.remain[teamid];
     }
 
     // number of remaining games between team1 and team2
     public int against(String team1, String team2) {
+        return standings.games[teamId(team1)][teamId(team2)];
+    }
+
+    // number of remaining games between the teams with given ids
+    public int against(int teamid1, int teamid2) {
 
-        checkTeam(team1);
-        checkTeam(team2);
+        checkTeam(teamid1);
+        checkTeam(teamid2);
 
-        int teamid1 = teamList.indexOf(team1);
-        int teamid2 = teamList.indexOf(team2);
-        return games[teamid1][teamid2];
+        return standings.games[teamid1][teamid2];
     }
 
     // is given team eliminated?
     public boolean isEliminated(String team) {
+        return results().get(teamId(team)).eliminated;
+    }
 
-        checkTeam(team);
+    // is the team with given id eliminated?
+    public boolean isEliminated(int teamid) {
 
-        FordFulkerson maxflow = countMaxFlow(team);
-        if (maxflow == null) { // trivial elimination
-            return true;
-        } else {
-            return flow > maxflow.value();
-        }
+        checkTeam(teamid);
+
+        return results().get(teamid).eliminated;
     }
 
     // subset R of teams that eliminates given team; null if not eliminated
     public Iterable<String> certificateOfElimination(String team) {
+        return certificateOfElimination(teamId(team));
+    }
 
-        checkTeam(team);
+    // subset R of teams that eliminates the team with given id; null if not eliminated
+    public Iterable<String> certificateOfElimination(int teamid) {
 
-        if (!isEliminated(team)) {
-            return null;
-        }
+        checkTeam(teamid);
 
-        int teamid = teamList.indexOf(team);
-        FordFulkerson maxflow = countMaxFlow(team);
-        int numOfGameVertice = teamNum * (teamNum - 1) / 2;
-        ArrayList<String> certificate = new ArrayList<>();
+        return results().get(teamid).certificate;
+    }
+
+    // number of elimination decisions made by the given tier of the filter cascade
+    // during the binary search of solveAll
+    public long decidedBy(Tier tier) {
+        return decided[tier.ordinal()].sum();
+    }
 
+    // elimination status of every team, computed together on the first query
+    private AtomicReferenceArray<Result> results() {
+        AtomicReferenceArray<Result> r = results;
+        if (r == null) {
+            synchronized (this) {
+                r = results;
+                if (r == null) {
+                    r = solveAll();
+                    results = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    // a team is eliminated exactly when wins + remain is below a threshold shared by
+    // the whole division (Wayne, 2001), so the status of every team follows from a
+    // binary search over the teams ordered by that bound, using O(log n) max-flows;
+    // the certificates of all eliminated teams are found in the same pass
+    private AtomicReferenceArray<Result> solveAll() {
+        Integer[] order = new Integer[teamNum];
         for (int i = 0; i < teamNum; i++) {
-            if (teamid == i) continue;
-            if (maxflow == null) { // trivial elimination
-                if (wins[teamid] + remain[teamid] - wins[i] < 0) {
-                    certificate.add(teamList.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> wins[i] + remain[i]));
+
+        // order[0..lo) is eliminated, order[hi..teamNum) is not
+        AtomicReferenceArray<Result> r = new AtomicReferenceArray<>(teamNum);
+        int lo = 0;
+        int hi = teamNum;
+        Set<Integer> probed = new HashSet<>();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Result result = solve(order[mid], true, true);
+            r.set(order[mid], result);
+            probed.add(order[mid]);
+            if (result.eliminated) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        // keep only the flows the next update will need
+        Iterator<Map.Entry<Integer, EliminationFlow>> it = networks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, EliminationFlow> entry = it.next();
+            if (!probed.contains(entry.getKey())) {
+                spare.push(entry.getValue());
+                it.remove();
+            }
+        }
+
+        // order[lo - 1] is the probed eliminated team with the highest bound: its
+        // certificate R averages more wins than that bound, so R also eliminates every
+        // team with a lower bound that is not in R itself; the others are solved
+        if (lo > 0) {
+            Result highest = r.get(order[lo - 1]);
+            boolean[] inCertificate = new boolean[teamNum];
+            for (String team : highest.certificate) {
+                inCertificate[teamIndex.get(team)] = true;
+            }
+            for (int k = 0; k < lo - 1; k++) {
+                int x = order[k];
+                if (r.get(x) == null) {
+                    r.set(x, inCertificate[x] ? solve(x, false, false) : highest);
                 }
             }
-            else if (maxflow.inCut(i + numOfGameVertice + 1)) {
-                certificate.add(teamList.get(i));
+        }
+        for (int k = lo; k < teamNum; k++) {
+            if (r.get(order[k]) == null) {
+                r.set(order[k], Result.NOT_ELIMINATED);
             }
         }
-         return certificate;
+        return r;
     }
 
-    private FordFulkerson countMaxFlow(String team) {
+    // record that winner beat loser in one of their remaining games
+    public void recordResult(String winner, String loser) {
+        recordResult(teamId(winner), teamId(loser));
+    }
 
-        // count all numbers of the vertices
-        int teamid = teamList.indexOf(team);
-        int numOfGameVertice = teamNum * (teamNum - 1) / 2;
-        int sumOfVertice = 2 + numOfGameVertice + teamNum;
+    // record that the team with id w beat the team with id l in one of their remaining games
+    public synchronized void recordResult(int w, int l) {
 
-        // start building the flow network
-        int s = 0; // source
-        int t = sumOfVertice - 1; // sink
-        FlowNetwork network = new FlowNetwork(sumOfVertice);
-        flow = 0;
+        checkTeam(w);
+        checkTeam(l);
 
-        int index = 1;
-        for (int i = 0; i < teamNum; i++) {
-            if (i == teamid) {
+        if (w == l || games[w][l] == 0) {
+            throw new IllegalArgumentException("no game left between " + teamList.get(w)
+                                                       + " and " + teamList.get(l));
+        }
+
+        wins[w]++;
+        loss[l]++;
+        remain[w]--;
+        remain[l]--;
+        games[w][l]--;
+        games[l][w]--;
+
+        // repair the kept flows instead of solving them again; the winner's own network
+        // does not change, as its bound wins + remain stays the same
+        Iterator<Map.Entry<Integer, EliminationFlow>> it = networks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, EliminationFlow> entry = it.next();
+            int x = entry.getKey();
+            EliminationFlow network = entry.getValue();
+            if (x == w) {
                 continue;
             }
 
+            boolean trivial = false;
+            if (x == l) { // the loser's bound dropped by one against every team
+                for (int i = 0; i < teamNum && !trivial; i++) {
+                    if (i != x) {
+                        trivial = !lowerSinkCapacity(network, x, i);
+                    }
+                }
+            } else {
+                network.lowerCapacity(gameEdge(w, l), games[w][l], SOURCE, sink());
+                trivial = !lowerSinkCapacity(network, x, w);
+            }
+            if (trivial) {
+                spare.push(network);
+                it.remove();
+            }
+        }
+        if (template != null) {
+            template.setCapacity(gameEdge(w, l), games[w][l]);
+        }
+
+        standings = new Standings(wins, loss, remain, games);
+        results = solveAll();
+    }
+
+    // lower the capacity of team i's sink edge in the network of teamid;
+    // false if teamid has become trivially eliminated by team i
+    private boolean lowerSinkCapacity(EliminationFlow network, int teamid, int i) {
+        int cap = wins[teamid] + remain[teamid] - wins[i];
+        if (cap < 0) {
+            return false;
+        }
+        network.lowerCapacity(sinkEdge(i), cap, SOURCE, sink());
+        return true;
+    }
+
+    // status of the given team; keep tells whether to keep its max-flow network for
+    // updates, and count whether the decision is recorded in the tier statistics
+    private Result solve(int teamid, boolean keep, boolean count) {
+
+        // trivial elimination
+        boolean trivial = false;
+        for (int i = 0; i < teamNum; i++) {
+            trivial |= i != teamid && wins[teamid] + remain[teamid] - wins[i] < 0;
+        }
+        if (trivial) {
+            ArrayList<String> certificate = new ArrayList<>();
+            for (int i = 0; i < teamNum; i++) {
+                if (i != teamid && wins[teamid] + remain[teamid] - wins[i] < 0) {
+                    certificate.add(teamList.get(i));
+                }
+            }
+            EliminationFlow kept = networks.remove(teamid);
+            if (kept != null) {
+                spare.push(kept);
+            }
+            if (count) decided[Tier.TRIVIAL.ordinal()].increment();
+            return new Result(true, certificate);
+        }
+
+        // no other team can pass the given team, even by winning every division game
+        // it has left against the rest
+        if (!threatened(teamid)) {
+            if (count) decided[Tier.NO_THREAT.ordinal()].increment();
+            return Result.NOT_ELIMINATED;
+        }
+
+        // the k teams with the most wins average more than the given team can reach
+        List<String> leaders = leaders(teamid);
+        if (leaders != null) {
+            if (count) decided[Tier.SUBSET_AVERAGE.ordinal()].increment();
+            return new Result(true, leaders);
+        }
+
+        // nontrivial elimination: the other teams cannot play out their games
+        // without one of them passing the given team
+        if (count) decided[Tier.MAX_FLOW.ordinal()].increment();
+        EliminationFlow maxflow = networks.get(teamid);
+        boolean fresh = maxflow == null;
+        if (fresh) {
+            maxflow = countMaxFlow(teamid);
+            if (keep) {
+                networks.put(teamid, maxflow);
+            }
+        } else {
+            maxflow.maxFlow(SOURCE, sink()); // warm start from the repaired flow
+        }
+        if (fresh && !keep) {
+            spare.push(maxflow); // still readable below, as nothing else runs meanwhile
+        }
+
+        int gamesLeft = 0;
+        for (int i = 0; i < teamNum; i++) {
             for (int j = i + 1; j < teamNum; j++) {
-                if (j == teamid) {
-                    continue;
+                if (i != teamid && j != teamid) {
+                    gamesLeft += games[i][j];
                 }
+            }
+        }
+        if (maxflow.value() == gamesLeft) {
+            return Result.NOT_ELIMINATED;
+        }
+
+        ArrayList<String> certificate = new ArrayList<>();
+        for (int i = 0; i < teamNum; i++) {
+            if (i != teamid && maxflow.inCut(teamVertex(i))) {
+                certificate.add(teamList.get(i));
+            }
+        }
+        return new Result(true, certificate);
+    }
 
-                network.addEdge(new FlowEdge(s, index, games[i][j]));
-                network.addEdge(
-                        new FlowEdge(index, i + numOfGameVertice + 1, Double.POSITIVE_INFINITY));
-                network.addEdge(
-                        new FlowEdge(index, j + numOfGameVertice + 1, Double.POSITIVE_INFINITY));
-                index++;
-                flow += games[i][j];
+    // can some other team still finish with more wins than the given team's maximum?
+    private boolean threatened(int teamid) {
+        int maxWins = wins[teamid] + remain[teamid];
+        for (int i = 0; i < teamNum; i++) {
+            if (i == teamid) continue;
+            int reach = wins[i];
+            for (int j = 0; j < teamNum; j++) {
+                if (j != teamid) reach += games[i][j];
             }
+            if (reach > maxWins) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            if (wins[teamid] + remain[teamid] - wins[i] < 0) {
-                return null;
-            } else {
-                network.addEdge(new FlowEdge(i + numOfGameVertice + 1, t, wins[teamid] + remain[teamid] - wins[i]));
+    // a set R of the teams with the most wins whose wins plus games among themselves
+    // exceed |R| times the given team's maximum; null if there is none
+    private List<String> leaders(int teamid) {
+        int maxWins = wins[teamid] + remain[teamid];
+
+        // the other teams by decreasing wins
+        int k = 0;
+        for (int i = 0; i < teamNum; i++) {
+            if (i == teamid) continue;
+            int p = k++;
+            while (p > 0 && wins[byWins[p - 1]] < wins[i]) {
+                byWins[p] = byWins[p - 1];
+                p--;
             }
+            byWins[p] = i;
+        }
 
+        long total = 0; // wins plus games among the first k teams
+        for (k = 0; k < teamNum - 1; k++) {
+            int team = byWins[k];
+            total += wins[team];
+            for (int p = 0; p < k; p++) {
+                total += games[team][byWins[p]];
+            }
+            if (total > (long) maxWins * (k + 1)) {
+                ArrayList<String> certificate = new ArrayList<>();
+                for (int p = 0; p <= k; p++) {
+                    certificate.add(teamList.get(byWins[p]));
+                }
+                return certificate;
+            }
         }
+        return null;
+    }
 
-        FordFulkerson maxflow = new FordFulkerson(network, s, t);
-        return maxflow;
+    // the template's game capacities, except for the games of the given team,
+    // on a spare network if there is one
+    private EliminationFlow countMaxFlow(int teamid) {
+        EliminationFlow network = spare.isEmpty() ? new EliminationFlow(template()) : spare.pop();
+        network.load(template());
+
+        for (int i = 0; i < teamNum; i++) {
+            if (i != teamid) {
+                network.setCapacity(gameEdge(i, teamid), 0);
+                network.setCapacity(sinkEdge(i), wins[teamid] + remain[teamid] - wins[i]);
+            }
+        }
+
+        network.maxFlow(SOURCE, sink());
+        return network;
     }
 
-    private void checkTeam(String team) {
-        if (team == null) {
-            throw new IllegalArgumentException("team is invalid");
+    // network of the current standings with every game at its capacity and no sink capacity
+    private EliminationFlow template() {
+        if (template == null) {
+            template = EliminationFlow.division(teamNum);
+            for (int i = 0; i < teamNum; i++) {
+                for (int j = i + 1; j < teamNum; j++) {
+                    template.setCapacity(gameEdge(i, j), games[i][j]);
+                }
+            }
         }
+        return template;
+    }
 
-        if (!teamList.contains(team)) {
-            throw new IllegalArgumentException("team is not included");
+    private int gameEdge(int i, int j) {
+        return EliminationFlow.gameEdge(teamNum, i, j);
+    }
+
+    private int sinkEdge(int i) {
+        return EliminationFlow.sinkEdge(teamNum, i);
+    }
+
+    private int teamVertex(int i) {
+        return EliminationFlow.teamVertex(teamNum, i);
+    }
+
+    private int sink() {
+        return EliminationFlow.sink(teamNum);
+    }
+
+    private void checkTeam(int teamid) {
+        if (teamid < 0 || teamid >= teamNum) {
+            throw new IllegalArgumentException("team id out of range");
         }
     }
 
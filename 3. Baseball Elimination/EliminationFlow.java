@@ -0,0 +1,252 @@
+/* *****************************************************************************
+ *  Topic:      Elimination Flow
+ *              Integer max-flow for baseball elimination networks, using Dinic's
+ *              algorithm on flat edge arrays. The network has only four layers
+ *              (source, games, teams, sink), so every blocking flow is found by
+ *              a shallow DFS and the number of phases stays small.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+class EliminationFlow {
+    // capacity of the game-to-team edges, which never limit the flow
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    private final int[] head;   // first edge out of each vertex, -1 if none
+    private final int[] next;   // next edge out of the same vertex
+    private final int[] to;     // head, next and to may be shared with copies of this network
+    private final int[] capacity;
+    private final int[] flow;   // edge e and its reverse e ^ 1 carry opposite flows
+    private final int[] level;  // BFS distance from the source, -1 if unreachable
+    private final int[] iter;   // next edge to try in the current phase
+    private final int[] queue;
+    private int edges;
+    private int value;
+
+    // empty network with the given number of vertices and room for maxEdges edges
+    EliminationFlow(int vertices, int maxEdges) {
+        head = new int[vertices];
+        next = new int[2 * maxEdges];
+        to = new int[2 * maxEdges];
+        capacity = new int[2 * maxEdges];
+        flow = new int[2 * maxEdges];
+        level = new int[vertices];
+        iter = new int[vertices];
+        queue = new int[vertices];
+        Arrays.fill(head, -1);
+    }
+
+    // network with the same edges and capacities as template, and no flow; the edge
+    // structure is shared, so no edges may be added to either network afterwards
+    EliminationFlow(EliminationFlow template) {
+        head = template.head;
+        next = template.next;
+        to = template.to;
+        edges = template.edges;
+        capacity = template.capacity.clone();
+        flow = new int[capacity.length];
+        level = new int[head.length];
+        iter = new int[head.length];
+        queue = new int[head.length];
+    }
+
+    // take over the capacities of template, a network with the same edges, and remove all flow
+    void load(EliminationFlow template) {
+        System.arraycopy(template.capacity, 0, capacity, 0, edges);
+        reset();
+    }
+
+    // network of a division of n teams: the source 0, a vertex for the game of every
+    // pair of teams i < j, a vertex for every team, and then the sink; all edges start
+    // with zero capacity and are found with gameEdge and sinkEdge
+    static EliminationFlow division(int n) {
+        int games = n * (n - 1) / 2;
+        EliminationFlow network = new EliminationFlow(games + n + 2, 3 * games + n);
+        int index = 1;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                network.addEdge(0, index, 0);
+                network.addEdge(index, teamVertex(n, i), INFINITY);
+                network.addEdge(index, teamVertex(n, j), INFINITY);
+                index++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            network.addEdge(teamVertex(n, i), sink(n), 0);
+        }
+        return network;
+    }
+
+    // source edge of the game between teams i and j of a division of n teams
+    static int gameEdge(int n, int i, int j) {
+        int lo = Math.min(i, j);
+        int hi = Math.max(i, j);
+        return 6 * (lo * n - lo * (lo + 1) / 2 + (hi - lo - 1));
+    }
+
+    // edge from team i to the sink
+    static int sinkEdge(int n, int i) {
+        return 6 * (n * (n - 1) / 2) + 2 * i;
+    }
+
+    static int teamVertex(int n, int i) {
+        return n * (n - 1) / 2 + 1 + i;
+    }
+
+    static int sink(int n) {
+        return n * (n - 1) / 2 + n + 1;
+    }
+
+    // add edge v->w and return its id
+    int addEdge(int v, int w, int cap) {
+        int e = edges;
+        link(e, v, w, cap);
+        link(e + 1, w, v, 0);
+        edges += 2;
+        return e;
+    }
+
+    private void link(int e, int v, int w, int cap) {
+        to[e] = w;
+        capacity[e] = cap;
+        next[e] = head[v];
+        head[v] = e;
+    }
+
+    // change the capacity of edge e; the current flow must still fit
+    void setCapacity(int e, int cap) {
+        capacity[e] = cap;
+    }
+
+    // lower the capacity of edge e, first sending back the flow that no longer fits
+    // along s-t flow paths through e; the flow must not contain cycles
+    void lowerCapacity(int e, int cap, int s, int t) {
+        while (flow[e] > cap) {
+            int excess = flow[e] - cap;
+
+            // a flow path from s to the tail of e
+            for (int v = to[e ^ 1]; v != s; ) {
+                int in = inflow(v);
+                excess = Math.min(excess, -flow[in]);
+                v = to[in];
+            }
+            // a flow path from the head of e to t
+            for (int v = to[e]; v != t; ) {
+                int out = outflow(v);
+                excess = Math.min(excess, flow[out]);
+                v = to[out];
+            }
+
+            for (int v = to[e ^ 1]; v != s; ) {
+                int in = inflow(v);
+                flow[in] += excess;
+                flow[in ^ 1] -= excess;
+                v = to[in];
+            }
+            for (int v = to[e]; v != t; ) {
+                int out = outflow(v);
+                flow[out] -= excess;
+                flow[out ^ 1] += excess;
+                v = to[out];
+            }
+            flow[e] -= excess;
+            flow[e ^ 1] += excess;
+            value -= excess;
+        }
+        capacity[e] = cap;
+    }
+
+    // reverse of an edge carrying flow into v
+    private int inflow(int v) {
+        int e = head[v];
+        while (flow[e] >= 0) {
+            e = next[e];
+        }
+        return e;
+    }
+
+    // edge carrying flow out of v
+    private int outflow(int v) {
+        int e = head[v];
+        while (flow[e] <= 0) {
+            e = next[e];
+        }
+        return e;
+    }
+
+    int capacity(int e) {
+        return capacity[e];
+    }
+
+    int flow(int e) {
+        return flow[e];
+    }
+
+    // remove all flow from the network
+    void reset() {
+        Arrays.fill(flow, 0, edges, 0);
+        value = 0;
+    }
+
+    // augment the current flow to a maximum s-t flow and return its value
+    int maxFlow(int s, int t) {
+        while (bfs(s, t)) {
+            System.arraycopy(head, 0, iter, 0, head.length);
+            int pushed;
+            while ((pushed = dfs(s, t, INFINITY)) > 0) {
+                value += pushed;
+            }
+        }
+        return value;
+    }
+
+    // value of the current flow
+    int value() {
+        return value;
+    }
+
+    // is v reachable from the source in the residual network of the last maxFlow?
+    boolean inCut(int v) {
+        return level[v] >= 0;
+    }
+
+    private boolean bfs(int s, int t) {
+        Arrays.fill(level, -1);
+        int first = 0;
+        int last = 0;
+        level[s] = 0;
+        queue[last++] = s;
+        while (first < last) {
+            int v = queue[first++];
+            for (int e = head[v]; e != -1; e = next[e]) {
+                int w = to[e];
+                if (level[w] < 0 && capacity[e] - flow[e] > 0) {
+                    level[w] = level[v] + 1;
+                    queue[last++] = w;
+                }
+            }
+        }
+        return level[t] >= 0;
+    }
+
+    private int dfs(int v, int t, int limit) {
+        if (v == t) {
+            return limit;
+        }
+        for (; iter[v] != -1; iter[v] = next[iter[v]]) {
+            int e = iter[v];
+            int w = to[e];
+            int residual = capacity[e] - flow[e];
+            if (residual > 0 && level[w] == level[v] + 1) {
+                int pushed = dfs(w, t, Math.min(limit, residual));
+                if (pushed > 0) {
+                    flow[e] += pushed;
+                    flow[e ^ 1] -= pushed;
+                    return pushed;
+                }
+            }
+        }
+        return 0;
+    }
+}
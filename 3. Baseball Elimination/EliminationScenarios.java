@@ -0,0 +1,380 @@
+/* *****************************************************************************
+ *  Topic:      Elimination Scenarios
+ *              What-if analysis on top of the baseball elimination problem. Many
+ *              hypothetical outcomes of the remaining games, sampled or given, are
+ *              evaluated in parallel to estimate how likely each team is to be
+ *              eliminated or to clinch the division, and the magic number of each
+ *              team (the fewest extra wins it needs to stay alive) is computed.
+ *              Every worker reuses one preallocated flow network for all of its
+ *              scenarios.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class EliminationScenarios {
+    private final int teamNum;
+    private final String[] teamNames;
+    private final int[] wins, remain;
+    private final int[][] games;
+    private final int[] units; // one entry i * teamNum + j for every remaining game, i < j
+    private final int teamBits; // low bits of a sort key that hold the team
+    private final int workers;
+
+    // per-team results of a set of scenarios
+    public static class Report {
+        private final String[] teamNames;
+        private final int scenarios;
+        private final int[] eliminated;
+        private final int[] clinched;
+        private final int[] magic;
+        private final Map<String, Integer> teamIndex = new HashMap<>(); // name -> position in teamNames
+
+        private Report(String[] teamNames, int scenarios, int[] eliminated, int[] clinched, int[] magic) {
+            this.teamNames = teamNames;
+            for (int i = 0; i < teamNames.length; i++) {
+                teamIndex.put(teamNames[i], i);
+            }
+            this.scenarios = scenarios;
+            this.eliminated = eliminated;
+            this.clinched = clinched;
+            this.magic = magic;
+        }
+
+        // number of scenarios evaluated
+        public int scenarios() {
+            return scenarios;
+        }
+
+        // fraction of scenarios in which the team is eliminated
+        public double eliminationProbability(String team) {
+            return scenarios == 0 ? 0 : (double) eliminated[index(team)] / scenarios;
+        }
+
+        // fraction of scenarios in which every other team is eliminated
+        public double clinchProbability(String team) {
+            return scenarios == 0 ? 0 : (double) clinched[index(team)] / scenarios;
+        }
+
+        // fewest further wins the team needs to be able to finish at least tied for first
+        // in the current standings; -1 if it is already eliminated
+        public int magicNumber(String team) {
+            return magic[index(team)];
+        }
+
+        private int index(String team) {
+            Integer i = team == null ? null : teamIndex.get(team);
+            if (i == null) {
+                throw new IllegalArgumentException("team is not included");
+            }
+            return i;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("%-16s %10s %10s %6s%n", "team", "P(elim)", "P(clinch)", "magic"));
+            for (int i = 0; i < teamNames.length; i++) {
+                s.append(String.format("%-16s %10.4f %10.4f %6d%n", teamNames[i],
+                                       eliminationProbability(teamNames[i]),
+                                       clinchProbability(teamNames[i]), magic[i]));
+            }
+            return s.toString();
+        }
+    }
+
+    // scenario engine for the current standings of the given division, one worker per core
+    public EliminationScenarios(BaseballElimination division) {
+        this(division, Runtime.getRuntime().availableProcessors());
+    }
+
+    // scenario engine for the current standings of the given division
+    public EliminationScenarios(BaseballElimination division, int workers) {
+        if (division == null) {
+            throw new IllegalArgumentException("division is null");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("number of workers must be positive");
+        }
+        this.workers = workers;
+        teamNum = division.numberOfTeams();
+        teamNames = new String[teamNum];
+        wins = new int[teamNum];
+        remain = new int[teamNum];
+        games = new int[teamNum][teamNum];
+
+        int index = 0;
+        for (String team : division.teams()) {
+            teamNames[index++] = team;
+        }
+        int gamesLeft = 0;
+        for (int i = 0; i < teamNum; i++) {
+            wins[i] = division.wins(i);
+            remain[i] = division.remaining(i);
+            for (int j = 0; j < teamNum; j++) {
+                games[i][j] = division.against(i, j);
+                if (i < j) gamesLeft += games[i][j];
+            }
+        }
+
+        teamBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, teamNum - 1));
+
+        units = new int[gamesLeft];
+        index = 0;
+        for (int i = 0; i < teamNum; i++) {
+            for (int j = i + 1; j < teamNum; j++) {
+                for (int k = 0; k < games[i][j]; k++) {
+                    units[index++] = i * teamNum + j;
+                }
+            }
+        }
+    }
+
+    // sample the given number of scenarios, in each of which gamesPlayed remaining games,
+    // chosen uniformly at random, are played and won by either team with equal chance
+    public Report simulate(int scenarios, int gamesPlayed, long seed) {
+        if (scenarios < 0 || gamesPlayed < 0) {
+            throw new IllegalArgumentException("argument is negative");
+        }
+        int played = Math.min(gamesPlayed, units.length);
+        return run(scenarios, (worker, k) -> {
+            // the random choices depend only on the seed and the scenario number
+            SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + k);
+            worker.reset();
+            for (int u = 0; u < played; u++) {
+                int pick = u + random.nextInt(worker.units.length - u);
+                int game = worker.units[pick];
+                worker.units[pick] = worker.units[u];
+                worker.units[u] = game;
+                int i = game / teamNum;
+                int j = game % teamNum;
+                if (random.nextBoolean()) worker.play(i, j);
+                else worker.play(j, i);
+            }
+        });
+    }
+
+    // evaluate the given outcomes, where outcome[i][j] is the number of the remaining
+    // games between teams i and j (in the order of teams()) that team i wins
+    public Report evaluate(List<int[][]> outcomes) {
+        if (outcomes == null) {
+            throw new IllegalArgumentException("outcomes is null");
+        }
+        for (int[][] outcome : outcomes) {
+            checkOutcome(outcome);
+        }
+        return run(outcomes.size(), (worker, k) -> {
+            int[][] outcome = outcomes.get(k);
+            worker.reset();
+            for (int i = 0; i < teamNum; i++) {
+                for (int j = 0; j < teamNum; j++) {
+                    for (int g = 0; g < outcome[i][j]; g++) {
+                        worker.play(i, j);
+                    }
+                }
+            }
+        });
+    }
+
+    private void checkOutcome(int[][] outcome) {
+        if (outcome == null || outcome.length != teamNum) {
+            throw new IllegalArgumentException("outcome not valid");
+        }
+        for (int i = 0; i < teamNum; i++) {
+            if (outcome[i] == null || outcome[i].length != teamNum) {
+                throw new IllegalArgumentException("outcome not valid");
+            }
+            for (int j = 0; j < teamNum; j++) {
+                if (outcome[i][j] < 0 || (i == j && outcome[i][j] != 0)
+                        || outcome[i][j] + outcome[j][i] > games[i][j]) {
+                    throw new IllegalArgumentException("outcome not valid");
+                }
+            }
+        }
+    }
+
+    // sets up scenario k on a worker
+    private interface Scenario {
+        void apply(Worker worker, int k);
+    }
+
+    private Report run(int scenarios, Scenario scenario) {
+        int[] eliminated = new int[teamNum];
+        int[] clinched = new int[teamNum];
+        int[] magic = new int[teamNum];
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            // scenarios are split into one contiguous chunk per worker
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int from = (int) ((long) scenarios * w / workers);
+                int to = (int) ((long) scenarios * (w + 1) / workers);
+                int first = teamNum * w / workers;
+                int last = teamNum * (w + 1) / workers;
+                futures.add(pool.submit(() -> {
+                    Worker worker = new Worker();
+                    for (int k = from; k < to; k++) {
+                        scenario.apply(worker, k);
+                        worker.count();
+                    }
+                    // the magic numbers of the current standings are shared out as well
+                    worker.reset();
+                    for (int x = first; x < last; x++) {
+                        magic[x] = worker.magicNumber(x);
+                    }
+                    return worker;
+                }));
+            }
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                for (int i = 0; i < teamNum; i++) {
+                    eliminated[i] += worker.eliminated[i];
+                    clinched[i] += worker.clinched[i];
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        return new Report(teamNames.clone(), scenarios, eliminated, clinched, magic);
+    }
+
+    // standings of one scenario and the reusable network used to evaluate it
+    private class Worker {
+        private final EliminationFlow network = EliminationFlow.division(teamNum);
+        private final int[] units = EliminationScenarios.this.units.clone();
+        private final int[] w = new int[teamNum];
+        private final int[] r = new int[teamNum];
+        private final int[][] g = new int[teamNum][teamNum];
+        private final int[] order = new int[teamNum];
+        private final int[] eliminated = new int[teamNum];
+        private final int[] clinched = new int[teamNum];
+
+        // back to the current standings
+        private void reset() {
+            System.arraycopy(EliminationScenarios.this.units, 0, units, 0, units.length);
+            System.arraycopy(wins, 0, w, 0, teamNum);
+            System.arraycopy(remain, 0, r, 0, teamNum);
+            for (int i = 0; i < teamNum; i++) {
+                System.arraycopy(games[i], 0, g[i], 0, teamNum);
+            }
+        }
+
+        // team i beats team j
+        private void play(int i, int j) {
+            w[i]++;
+            r[i]--;
+            r[j]--;
+            g[i][j]--;
+            g[j][i]--;
+        }
+
+        // add the status of every team in this scenario to the counts
+        private void count() {
+            // a team is eliminated exactly when w + r is below a threshold shared by the
+            // division, so a binary search over the teams ordered by w + r decides them all
+            // sort keys w + r above the team number, so ties keep the order of the teams
+            for (int i = 0; i < teamNum; i++) {
+                order[i] = (w[i] + r[i]) << teamBits | i;
+            }
+            Arrays.sort(order);
+            for (int k = 0; k < teamNum; k++) {
+                order[k] &= (1 << teamBits) - 1;
+            }
+            int lo = 0;
+            int hi = teamNum;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (!alive(order[mid], r[order[mid]])) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            for (int k = 0; k < lo; k++) {
+                eliminated[order[k]]++;
+            }
+            if (lo == teamNum - 1) {
+                clinched[order[teamNum - 1]]++;
+            }
+        }
+
+        // fewest further wins team x needs to stay alive; -1 if eliminated
+        private int magicNumber(int x) {
+            if (!alive(x, r[x])) {
+                return -1;
+            }
+            int lo = 0;
+            int hi = r[x];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (alive(x, mid)) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        // can team x still finish at least tied for first if it wins exactly k more games?
+        // x takes up to k of its own games and every other team up to w[x] + k wins; a
+        // solution with x winning fewer can always hand x more of its games
+        private boolean alive(int x, int k) {
+            int bound = w[x] + k;
+            for (int i = 0; i < teamNum; i++) {
+                if (w[i] > bound) {
+                    return false; // trivial elimination
+                }
+            }
+
+            network.reset();
+            int gamesLeft = 0;
+            for (int i = 0; i < teamNum; i++) {
+                for (int j = i + 1; j < teamNum; j++) {
+                    network.setCapacity(EliminationFlow.gameEdge(teamNum, i, j), g[i][j]);
+                    gamesLeft += g[i][j];
+                }
+                network.setCapacity(EliminationFlow.sinkEdge(teamNum, i), i == x ? k : bound - w[i]);
+            }
+            return network.maxFlow(0, EliminationFlow.sink(teamNum)) == gamesLeft;
+        }
+    }
+
+    // print the scenario report for the division in args[0], sampling args[1] scenarios
+    // (default 10000) in which args[2] remaining games (default all) are played
+    public static void main(String[] args) {
+        BaseballElimination division = new BaseballElimination(args[0]);
+        EliminationScenarios engine = new EliminationScenarios(division);
+        int scenarios = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int played = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+
+        long start = System.currentTimeMillis();
+        Report report = engine.simulate(scenarios, played, 0);
+        long elapsed = System.currentTimeMillis() - start;
+
+        StdOut.print(report);
+        StdOut.printf("%d scenarios in %d ms%n", report.scenarios(), elapsed);
+    }
+}
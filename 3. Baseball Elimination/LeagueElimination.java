@@ -0,0 +1,229 @@
+/* *****************************************************************************
+ *  Topic:      League Elimination Report
+ *              Loads every division of a league at once and reports which teams
+ *              of each division have been eliminated. A league is a directory of
+ *              division files, or a single file holding several divisions one
+ *              after another, each in the usual division format. Divisions are
+ *              solved in parallel and each report is written as soon as its
+ *              division is done.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class LeagueElimination {
+    private final List<String> names = new ArrayList<>();
+    private final List<BaseballElimination> divisions = new ArrayList<>();
+
+    // load every division found in the given files or directories
+    public LeagueElimination(String... paths) {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths is null");
+        }
+        try {
+            for (String path : paths) {
+                Path p = Paths.get(path);
+                if (Files.isDirectory(p)) {
+                    List<Path> files = new ArrayList<>();
+                    try (DirectoryStream<Path> dir = Files.newDirectoryStream(p)) {
+                        for (Path file : dir) {
+                            if (Files.isRegularFile(file)) files.add(file);
+                        }
+                    }
+                    files.sort(null);
+                    for (Path file : files) {
+                        load(file);
+                    }
+                } else {
+                    load(p);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of divisions
+    public int numberOfDivisions() {
+        return divisions.size();
+    }
+
+    // names of the divisions: the file name, followed by #k for the k-th division of a file
+    public Iterable<String> divisionNames() {
+        return names;
+    }
+
+    // the division with given name
+    public BaseballElimination division(String name) {
+        int index = names.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("division is not included");
+        }
+        return divisions.get(index);
+    }
+
+    // total number of teams in the league
+    public int numberOfTeams() {
+        int teams = 0;
+        for (BaseballElimination division : divisions) {
+            teams += division.numberOfTeams();
+        }
+        return teams;
+    }
+
+    // solve the divisions on the given number of threads and pass the report of each
+    // division to out as soon as it is done; reports arrive in completion order
+    public void report(int threads, Consumer<String> out) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("out is null");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<String> done = new ExecutorCompletionService<>(pool);
+            for (int d = 0; d < divisions.size(); d++) {
+                String name = names.get(d);
+                BaseballElimination division = divisions.get(d);
+                done.submit(() -> report(name, division));
+            }
+            for (int d = 0; d < divisions.size(); d++) {
+                out.accept(done.take().get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // elimination status and certificate of every team of one division
+    private static String report(String name, BaseballElimination division) {
+        StringBuilder s = new StringBuilder();
+        s.append("== ").append(name).append('\n');
+        for (int i = 0; i < division.numberOfTeams(); i++) {
+            s.append(division.teamName(i));
+            if (division.isEliminated(i)) {
+                s.append(" is eliminated by the subset R = {");
+                String separator = " ";
+                for (String team : division.certificateOfElimination(i)) {
+                    s.append(separator).append(team);
+                    separator = ", ";
+                }
+                s.append(" }\n");
+            } else {
+                s.append(" is not eliminated\n");
+            }
+        }
+        return s.toString();
+    }
+
+    // read all divisions of one file
+    private void load(Path file) throws IOException {
+        List<BaseballElimination> found = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Tokens in = new Tokens(reader);
+            while (in.hasNext()) {
+                int teamNum = in.nextInt();
+                String[] teams = new String[teamNum];
+                int[] wins = new int[teamNum];
+                int[] loss = new int[teamNum];
+                int[] remain = new int[teamNum];
+                int[][] games = new int[teamNum][teamNum];
+                for (int i = 0; i < teamNum; i++) {
+                    teams[i] = in.next();
+                    wins[i] = in.nextInt();
+                    loss[i] = in.nextInt();
+                    remain[i] = in.nextInt();
+                    for (int j = 0; j < teamNum; j++) {
+                        games[i][j] = in.nextInt();
+                    }
+                }
+                found.add(new BaseballElimination(teams, wins, loss, remain, games));
+            }
+        } catch (NoSuchElementException | NumberFormatException e) {
+            throw new IllegalArgumentException("malformed division file " + file, e);
+        }
+
+        String name = file.getFileName().toString();
+        for (int k = 0; k < found.size(); k++) {
+            names.add(found.size() == 1 ? name : name + "#" + (k + 1));
+            divisions.add(found.get(k));
+        }
+    }
+
+    // whitespace-separated tokens of a reader
+    private static class Tokens {
+        private final BufferedReader reader;
+        private StringTokenizer line = new StringTokenizer("");
+
+        private Tokens(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean hasNext() throws IOException {
+            while (!line.hasMoreTokens()) {
+                String s = reader.readLine();
+                if (s == null) return false;
+                line = new StringTokenizer(s);
+            }
+            return true;
+        }
+
+        private String next() throws IOException {
+            if (!hasNext()) throw new NoSuchElementException("unexpected end of file");
+            return line.nextToken();
+        }
+
+        private int nextInt() throws IOException {
+            return Integer.parseInt(next());
+        }
+    }
+
+    // print the elimination report of every division in the given files or directories,
+    // followed by throughput statistics
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        LeagueElimination league = new LeagueElimination(args);
+        long loaded = System.nanoTime();
+        league.report(threads, StdOut::print);
+        long solved = System.nanoTime();
+
+        double loadSeconds = (loaded - start) / 1e9;
+        double solveSeconds = (solved - loaded) / 1e9;
+        StdOut.printf("%d divisions, %d teams: loaded in %.3f s, solved in %.3f s "
+                              + "on %d threads (%.1f divisions/sec, %.1f teams/sec)%n",
+                      league.numberOfDivisions(), league.numberOfTeams(), loadSeconds,
+                      solveSeconds, threads, league.numberOfDivisions() / solveSeconds,
+                      league.numberOfTeams() / solveSeconds);
+    }
+}
@@ -0,0 +1,203 @@
+/* *****************************************************************************
+ *  Topic:      Boggle Cache
+ *              A bounded cache of solved Boggle boards, shared by the threads of
+ *              a solver. A board is keyed by its shape and letters; rotating or
+ *              reflecting a board does not change its words, so by default the
+ *              key is the smallest encoding among the eight rotations and
+ *              reflections of the board. Every entry keeps the trie nodes of the
+ *              words of the board, the words themselves unless only the score
+ *              was asked for, and its total score. The cache is split into
+ *              segments, each evicting its least recently used board. The trie
+ *              nodes only make sense in the trie that produced them, so a cache
+ *              belongs to the trie of the first solver that uses it.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class BoggleCache {
+    private static final int SEGMENTS = 16;
+    private final Segment[] segments;
+    private final boolean symmetric;
+    private BoggleTrie trie; // trie of the cached nodes, null until the first solver
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // the words of one board: their trie nodes, the words spelled out (null if not
+    // spelled) and their total score
+    static final class Entry {
+        final int[] nodes;
+        final String[] words;
+        final int score;
+
+        Entry(int[] nodes, String[] words, int score) {
+            this.nodes = nodes;
+            this.words = words;
+            this.score = score;
+        }
+    }
+
+    // least recently used boards of one segment
+    private final class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= capacity)
+                return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    // cache of at most capacity boards, identifying rotated and reflected boards
+    public BoggleCache(int capacity) {
+        this(capacity, true);
+    }
+
+    // cache of at most capacity boards; symmetric tells whether rotations and
+    // reflections of a board share one entry
+    public BoggleCache(int capacity, boolean symmetric) {
+        if (capacity < 1)
+            throw new java.lang.IllegalArgumentException("capacity must be positive");
+
+        this.symmetric = symmetric;
+        segments = new Segment[Math.min(SEGMENTS, capacity)];
+        for (int i = 0; i < segments.length; i++) {
+            // share the capacity out so that the segments add up to exactly capacity
+            segments[i] = new Segment(capacity / segments.length + (i < capacity % segments.length ? 1 : 0));
+        }
+    }
+
+    // number of lookups that found their board
+    public long hits() {
+        return hits.sum();
+    }
+
+    // number of lookups that did not find their board
+    public long misses() {
+        return misses.sum();
+    }
+
+    // number of boards evicted to make room
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // fraction of lookups that found their board
+    public double hitRate() {
+        long h = hits();
+        long total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    // number of boards in the cache
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d boards; %d hits, %d misses (%.1f%% hits), %d evictions",
+                             size(), hits(), misses(), 100 * hitRate(), evictions());
+    }
+
+    // tie the cache to the trie of a solver; every solver sharing it must use the same trie
+    synchronized void bind(BoggleTrie trie) {
+        if (this.trie == null)
+            this.trie = trie;
+        else if (this.trie != trie)
+            throw new java.lang.IllegalArgumentException("the cache belongs to another trie");
+    }
+
+    // the words of the board with the given key; null if it is not cached
+    Entry get(String key) {
+        Segment segment = segment(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry == null)
+            misses.increment();
+        else
+            hits.increment();
+        return entry;
+    }
+
+    void put(String key, Entry entry) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        return segments[((h ^ h >>> 16) & 0x7fffffff) % segments.length];
+    }
+
+    // key of the given board: its number of rows and columns, then its letters row by row
+    String key(BoggleBoard board) {
+        int m = board.rows();
+        int n = board.cols();
+        char[] best = new char[2 + m * n];
+        encode(board, 0, best);
+        if (symmetric) {
+            char[] other = new char[best.length];
+            for (int t = 1; t < 8; t++) {
+                encode(board, t, other);
+                if (smaller(other, best)) {
+                    char[] swap = best;
+                    best = other;
+                    other = swap;
+                }
+            }
+        }
+        return new String(best);
+    }
+
+    // encoding of one of the eight rotations and reflections of the board: bit 2 of t
+    // transposes the board, bits 0 and 1 then reverse its rows and columns
+    private static void encode(BoggleBoard board, int t, char[] a) {
+        int m = board.rows();
+        int n = board.cols();
+        boolean transpose = (t & 4) != 0;
+        int rows = transpose ? n : m;
+        int cols = transpose ? m : n;
+        a[0] = (char) rows;
+        a[1] = (char) cols;
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++) {
+                int si = transpose ? j : i;
+                int sj = transpose ? i : j;
+                if ((t & 1) != 0)
+                    si = m - 1 - si;
+                if ((t & 2) != 0)
+                    sj = n - 1 - sj;
+                a[2 + i * cols + j] = board.getLetter(si, sj);
+            }
+    }
+
+    private static boolean smaller(char[] a, char[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i])
+                return a[i] < b[i];
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+/* *****************************************************************************
+ *  Topic:      Boggle Grid
+ *              Neighbor tables of an m-by-n Boggle board, with the cells numbered
+ *              row by row. The tables only depend on the shape of the board, so
+ *              one table per shape is built and shared by every solver.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class BoggleGrid {
+    private static final ConcurrentHashMap<Long, BoggleGrid> CACHE = new ConcurrentHashMap<>();
+
+    final int rows;
+    final int cols;
+    final int cells;
+    final int[] start;     // neighbors of cell c are neighbor[start[c]..start[c + 1])
+    final int[] neighbor;
+
+    // the grid of the given shape
+    static BoggleGrid of(int rows, int cols) {
+        if (rows <= 0 || cols <= 0)
+            throw new java.lang.IllegalArgumentException("the board is empty");
+        return CACHE.computeIfAbsent((long) rows << 32 | cols, key -> new BoggleGrid(rows, cols));
+    }
+
+    private BoggleGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        start = new int[cells + 1];
+        int[] adjacent = new int[8 * cells];
+
+        int n = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                start[i * cols + j] = n;
+                for (int di = -1; di <= 1; di++) {
+                    for (int dj = -1; dj <= 1; dj++) {
+                        int ni = i + di;
+                        int nj = j + dj;
+                        if ((di != 0 || dj != 0) && ni >= 0 && ni < rows && nj >= 0 && nj < cols)
+                            adjacent[n++] = ni * cols + nj;
+                    }
+                }
+            }
+        }
+        start[cells] = n;
+        neighbor = Arrays.copyOf(adjacent, n);
+    }
+}
@@ -0,0 +1,362 @@
+/* *****************************************************************************
+ *  Topic:      Boggle Optimizer
+ *              Searches for Boggle boards of the highest possible score, or of
+ *              a given target score, by simulated annealing over the letters of
+ *              the board. Every worker runs its own annealing chain. A move
+ *              changes the letter of one cell or swaps the letters of two cells,
+ *              and only the paths through the changed cells are searched again:
+ *              each worker counts, for every trie node, the paths of the board
+ *              that spell its word, so a word is lost or gained exactly when its
+ *              count drops to or rises from zero.
+ *              Usage: java BoggleOptimizer dictionary.txt rows cols [steps] [target]
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BoggleOptimizer {
+    private static final byte QU = 26; // letter code of a 'Q' cell, which spells "QU"
+    private static final double START_TEMPERATURE = 20.0;
+    private static final double END_TEMPERATURE = 0.05;
+    private static final int MAXIMUM = Integer.MAX_VALUE;
+    private final BoggleTrie trie;
+    private final int[] height; // length of the longest path from each trie node down to a word
+    private final int[] below;  // letters on the paths from each trie node down to a word
+    private final BoggleGrid grid;
+    private final int workers;
+
+    // best board found by a search
+    public static class Result {
+        private final BoggleBoard board;
+        private final int score;
+        private final long boards;
+        private final long nanos;
+
+        private Result(BoggleBoard board, int score, long boards, long nanos) {
+            this.board = board;
+            this.score = score;
+            this.boards = boards;
+            this.nanos = nanos;
+        }
+
+        // the best board
+        public BoggleBoard board() {
+            return board;
+        }
+
+        // score of the best board
+        public int score() {
+            return score;
+        }
+
+        // number of candidate boards evaluated by all workers
+        public long boards() {
+            return boards;
+        }
+
+        // candidate boards evaluated per second of wall-clock time
+        public double boardsPerSecond() {
+            return nanos == 0 ? 0 : boards * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s%nscore %d; %d boards in %.2f s (%.1f boards/sec)",
+                                 board, score, boards, nanos / 1e9, boardsPerSecond());
+        }
+    }
+
+    // optimizer for boards of the given shape, one worker per core
+    public BoggleOptimizer(BoggleTrie trie, int rows, int cols) {
+        this(trie, rows, cols, Runtime.getRuntime().availableProcessors());
+    }
+
+    // optimizer for boards of the given shape, which may have at most 64 cells
+    public BoggleOptimizer(BoggleTrie trie, int rows, int cols, int workers) {
+        if (trie == null)
+            throw new java.lang.IllegalArgumentException("the trie is null");
+        if (workers < 1)
+            throw new java.lang.IllegalArgumentException("number of workers must be positive");
+
+        grid = BoggleGrid.of(rows, cols);
+        if (grid.cells > 64)
+            throw new java.lang.IllegalArgumentException("boards of more than 64 cells are not supported");
+        this.trie = trie;
+        this.workers = workers;
+
+        // children are numbered after their parents, so a backward pass sees them first
+        height = new int[trie.size()];
+        below = new int[trie.size()];
+        for (int x = trie.size() - 1; x >= 0; x--) {
+            for (int letter = 0; letter < 26; letter++) {
+                int child = trie.child(x, letter);
+                if (child >= 0) {
+                    height[x] = Math.max(height[x], height[child] + 1);
+                    below[x] |= 1 << letter | below[child];
+                }
+            }
+        }
+    }
+
+    // anneal for the given number of steps on every worker and return the highest
+    // scoring board found
+    public Result maximize(long steps, long seed) {
+        return run(MAXIMUM, steps, seed);
+    }
+
+    // anneal for at most the given number of steps on every worker, until a board of
+    // exactly the target score is found; otherwise return the closest board found
+    public Result target(int score, long steps, long seed) {
+        if (score < 0)
+            throw new java.lang.IllegalArgumentException("the target score is negative");
+        return run(score, steps, seed);
+    }
+
+    private Result run(int target, long steps, long seed) {
+        if (steps < 0)
+            throw new java.lang.IllegalArgumentException("number of steps is negative");
+
+        LongAdder boards = new LongAdder();
+        AtomicBoolean reached = new AtomicBoolean();
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Chain best = null;
+        try {
+            List<Future<Chain>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                // the random choices of a worker depend only on the seed and its number
+                SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + w);
+                futures.add(pool.submit(() -> {
+                    Chain chain = new Chain(random, target);
+                    chain.anneal(steps, reached, boards);
+                    return chain;
+                }));
+            }
+            for (Future<Chain> future : futures) {
+                Chain chain = future.get();
+                if (best == null || distance(chain.bestScore, target) < distance(best.bestScore, target))
+                    best = chain;
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        return new Result(board(best.best), best.bestScore, boards.sum(), System.nanoTime() - start);
+    }
+
+    // how far a score is from the target; lower is better
+    private static long distance(int score, int target) {
+        return Math.abs((long) target - score);
+    }
+
+    private BoggleBoard board(byte[] letters) {
+        char[][] a = new char[grid.rows][grid.cols];
+        for (int i = 0; i < grid.rows; i++)
+            for (int j = 0; j < grid.cols; j++) {
+                byte letter = letters[i * grid.cols + j];
+                a[i][j] = letter == QU ? 'Q' : (char) ('A' + letter);
+            }
+        return new BoggleBoard(a);
+    }
+
+    // one annealing chain with its current board and the path counts of that board
+    private class Chain {
+        private final SplittableRandom random;
+        private final int target;
+        private final byte[] letters = new byte[grid.cells];
+        private final int[] paths = new int[trie.size()]; // paths spelling the word of each node
+        private final int[] distance = new int[grid.cells]; // king moves to the changed cell
+        private int changed = -1;     // the cell being changed, -1 while counting all paths
+        private byte removed, added;  // old and new letter of the changed cell
+        private int either;           // the old and the new letter as a trie letter mask
+        private int[] journal = new int[64]; // counts changed by the current move: node or ~node
+        private int journaled;
+        private int score;
+        private final byte[] best = new byte[grid.cells];
+        private int bestScore;
+
+        private Chain(SplittableRandom random, int target) {
+            this.random = random;
+            this.target = target;
+            for (int cell = 0; cell < grid.cells; cell++)
+                letters[cell] = letter(random.nextInt(26));
+            for (int start = 0; start < grid.cells; start++)
+                DFS(start, BoggleTrie.ROOT, 0L, 1);
+            keep();
+        }
+
+        private void anneal(long steps, AtomicBoolean reached, LongAdder boards) {
+            long evaluated = 0;
+            double cooling = Math.log(END_TEMPERATURE / START_TEMPERATURE) / Math.max(1, steps);
+            for (long step = 0; step < steps && bestScore != target && !reached.get(); step++) {
+                double temperature = START_TEMPERATURE * Math.exp(cooling * step);
+                int before = score;
+                journaled = 0;
+
+                int a = random.nextInt(grid.cells);
+                int b = random.nextInt(grid.cells);
+                byte oldA = letters[a];
+                byte oldB = letters[b];
+                if (random.nextBoolean() && oldA != oldB) {
+                    change(a, oldB);
+                    change(b, oldA);
+                }
+                else
+                    change(a, letter(random.nextInt(26)));
+                evaluated++;
+
+                long worse = distance(score, target) - distance(before, target);
+                if (worse <= 0 || random.nextDouble() < Math.exp(-worse / temperature)) {
+                    if (distance(score, target) < distance(bestScore, target))
+                        keep();
+                }
+                else {
+                    // undo the move from the journal instead of searching again
+                    for (int k = journaled - 1; k >= 0; k--) {
+                        int entry = journal[k];
+                        if (entry >= 0)
+                            paths[entry]--;
+                        else
+                            paths[~entry]++;
+                    }
+                    letters[a] = oldA;
+                    letters[b] = oldB;
+                    score = before;
+                }
+            }
+            if (bestScore == target)
+                reached.set(true);
+            boards.add(evaluated);
+        }
+
+        private byte letter(int index) {
+            return index == 'Q' - 'A' ? QU : (byte) index;
+        }
+
+        private void keep() {
+            System.arraycopy(letters, 0, best, 0, grid.cells);
+            bestScore = score;
+        }
+
+        // give the cell a new letter, searching again only the paths through it
+        private void change(int cell, byte letter) {
+            if (letters[cell] == letter)
+                return;
+            int ci = cell / grid.cols;
+            int cj = cell % grid.cols;
+            for (int x = 0; x < grid.cells; x++)
+                distance[x] = Math.max(Math.abs(x / grid.cols - ci), Math.abs(x % grid.cols - cj));
+
+            changed = cell;
+            removed = letters[cell];
+            added = letter;
+            either = 1 << trieLetter(removed) | 1 << trieLetter(added);
+            for (int start = 0; start < grid.cells; start++)
+                DFS(start, BoggleTrie.ROOT, 0L, 0);
+            letters[cell] = letter;
+            changed = -1;
+        }
+
+        // extend a path, which leads to the given trie node, by the given cell. The sign
+        // is 0 while the path does not contain the changed cell; such a path is shared by
+        // the old and the new board and is walked once, then split at the changed cell
+        // into a path of the old board whose words are removed (-1) and a path of the
+        // new board whose words are added (+1)
+        private void DFS(int cell, int node, long visited, int sign) {
+            if (cell == changed && sign == 0) {
+                DFS(cell, node, visited, -1);
+                DFS(cell, node, visited, 1);
+                return;
+            }
+
+            byte letter = cell != changed ? letters[cell] : sign < 0 ? removed : added;
+            int next = step(node, letter);
+            if (next < 0)
+                return;
+
+            if (sign != 0) {
+                if (trie.isWord(next))
+                    count(next, sign);
+            }
+            // the changed cell is at least distance[cell] more cells, and trie levels, away,
+            // and has to spell its old or its new letter
+            else if (height[next] < distance[cell] || (below[next] & either) == 0)
+                return;
+
+            visited |= 1L << cell;
+            for (int k = grid.start[cell]; k < grid.start[cell + 1]; k++) {
+                int neighbor = grid.neighbor[k];
+                if ((visited & 1L << neighbor) == 0)
+                    DFS(neighbor, next, visited, sign);
+            }
+        }
+
+        // one more (+1) or one less (-1) path spelling the word of the given node
+        private void count(int node, int sign) {
+            if (sign > 0 && paths[node]++ == 0)
+                score += trie.score(node);
+            else if (sign < 0 && --paths[node] == 0)
+                score -= trie.score(node);
+
+            if (changed >= 0) {
+                if (journaled == journal.length)
+                    journal = Arrays.copyOf(journal, 2 * journal.length);
+                journal[journaled++] = sign > 0 ? node : ~node;
+            }
+        }
+
+        // first trie letter spelled by the given letter code
+        private int trieLetter(byte letter) {
+            return letter == QU ? 'Q' - 'A' : letter;
+        }
+
+        // trie node reached from node by the given letter code; -1 if there is none
+        private int step(int node, int letter) {
+            if (letter != QU)
+                return trie.child(node, letter);
+            int next = trie.child(node, 'Q' - 'A');
+            return next < 0 ? -1 : trie.child(next, 'U' - 'A');
+        }
+    }
+
+    // search boards of the given shape for the dictionary in args[0], annealing for
+    // args[3] steps per worker (default 100000), towards args[4] if given
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        BoggleTrie trie = new BoggleTrie(in.readAllStrings());
+        int rows = Integer.parseInt(args[1]);
+        int cols = Integer.parseInt(args[2]);
+        long steps = args.length > 3 ? Long.parseLong(args[3]) : 100000;
+
+        BoggleOptimizer optimizer = new BoggleOptimizer(trie, rows, cols);
+        Result result;
+        if (args.length > 4)
+            result = optimizer.target(Integer.parseInt(args[4]), steps, 0);
+        else
+            result = optimizer.maximize(steps, 0);
+        StdOut.println(result);
+    }
+}
@@ -0,0 +1,258 @@
+/* *****************************************************************************
+ *  Topic:      Boggle Search
+ *              Scratch state of one Boggle search: the letters of the board, the
+ *              visited cells, the current path and the words found so far. A
+ *              search belongs to one thread at a time, while the trie and the
+ *              neighbor tables it reads are shared by every search.
+ *              Before searching a board, the pairs of letters that are adjacent
+ *              on it are collected; a trie node none of whose words can be
+ *              spelled with those pairs is never entered. Which nodes are viable
+ *              is worked out lazily, once per node and board.
+ *              A search either spells the words it finds or only adds up their
+ *              scores and records their trie nodes, in which case it creates no
+ *              objects at all.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+final class BoggleSearch {
+    private static final byte QU = 26; // letter code of a 'Q' cell, which spells "QU"
+    private final BoggleTrie trie;
+    private final int[] found; // epoch in which the word ending at each trie node was last found
+    private int epoch;
+    private final int[] viable; // boards << 1 | 1 if a word can be spelled below the node
+    private int boards; // number of boards loaded so far
+    private final LongAdder skipped; // nodes not entered because they are not viable
+    private long skips;
+    private final int[] adjacent = new int[QU + 1]; // letter codes next to each letter code
+    private BoggleGrid grid;
+    private byte[] letters = new byte[0];  // letter code of each cell
+    private long[] visited = new long[0];  // visited cells of boards with more than 64 cells
+    private char[] word = new char[0];     // letters of the current path
+    private int[] nodes = new int[16];     // trie node of each word found since begin
+    private int count;
+    private List<String> words;            // created on the first word found since begin
+    private boolean scoring;               // add up scores instead of spelling words
+    private int score;
+
+    BoggleSearch(BoggleTrie trie, LongAdder skipped) {
+        this.trie = trie;
+        this.skipped = skipped;
+        found = new int[trie.size()];
+        viable = new int[trie.size()];
+    }
+
+    // take over the letters of the given board
+    void load(BoggleBoard board) {
+        grid = BoggleGrid.of(board.rows(), board.cols());
+        if (letters.length < grid.cells) {
+            letters = new byte[grid.cells];
+            visited = new long[(grid.cells + 63) >>> 6];
+            word = new char[2 * grid.cells];
+        }
+
+        for (int i = 0; i < grid.rows; i++)
+            for (int j = 0; j < grid.cols; j++) {
+                char c = board.getLetter(i, j);
+                letters[i * grid.cols + j] = c == 'Q' ? QU : (byte) (c - 'A');
+            }
+
+        Arrays.fill(adjacent, 0);
+        for (int cell = 0; cell < grid.cells; cell++) {
+            for (int k = grid.start[cell]; k < grid.start[cell + 1]; k++)
+                adjacent[letters[cell]] |= 1 << letters[grid.neighbor[k]];
+        }
+
+        // a new board forgets which nodes were viable
+        if (++boards == 1 << 30) {
+            Arrays.fill(viable, 0);
+            boards = 1;
+        }
+    }
+
+    // number of cells of the loaded board
+    int cells() {
+        return grid.cells;
+    }
+
+    // forget the words found so far
+    void begin() {
+        // a new epoch forgets the words found by earlier searches
+        if (++epoch == 0) {
+            Arrays.fill(found, 0);
+            epoch = 1;
+        }
+        count = 0;
+        words = null;
+    }
+
+    // mark the word ending at node as found; false if it already was since begin
+    boolean mark(int node) {
+        if (found[node] == epoch)
+            return false;
+        found[node] = epoch;
+        return true;
+    }
+
+    // find the words starting at the cells lo..hi-1
+    void search(int lo, int hi) {
+        for (int cell = lo; cell < hi; cell++) {
+            if (grid.cells <= 64)
+                DFS(cell, 0, BoggleTrie.ROOT, 0L);
+            else
+                DFS(cell, 0, BoggleTrie.ROOT);
+        }
+        skipped.add(skips);
+        skips = 0;
+    }
+
+    // total score of the words starting at the cells lo..hi-1 that were not found
+    // since begin; only the trie nodes of the words are recorded, they are not spelled
+    int score(int lo, int hi) {
+        scoring = true;
+        score = 0;
+        try {
+            search(lo, hi);
+        }
+        finally {
+            scoring = false;
+        }
+        return score;
+    }
+
+    // number of words found since begin
+    int count() {
+        return count;
+    }
+
+    // trie node of the k-th word found
+    int node(int k) {
+        return nodes[k];
+    }
+
+    // the words found since begin, in the order they were found; empty after score
+    List<String> words() {
+        if (words == null)
+            words = new ArrayList<>();
+        return words;
+    }
+
+    // trie node reached from node by the given letter code; -1 if there is none
+    private int step(int node, int letter) {
+        if (letter != QU)
+            return trie.child(node, letter);
+        int next = trie.child(node, 'Q' - 'A');
+        return next < 0 ? -1 : trie.child(next, 'U' - 'A');
+    }
+
+    // can a word end at or below node, which was entered from a cell with the given
+    // letter code, using only the letters of the board and its adjacent pairs?
+    private boolean viable(int node, int letter) {
+        int v = viable[node];
+        if (v >>> 1 == boards)
+            return (v & 1) != 0;
+
+        boolean ok = trie.isWord(node);
+        for (int m = adjacent[letter]; m != 0 && !ok; m &= m - 1) {
+            int next = Integer.numberOfTrailingZeros(m);
+            int child = step(node, next);
+            ok = child >= 0 && viable(child, next);
+        }
+        viable[node] = boards << 1 | (ok ? 1 : 0);
+        return ok;
+    }
+
+    // append the letter of the given cell to word[0..length)
+    private int append(int cell, int length) {
+        byte letter = letters[cell];
+        if (letter == QU) {
+            word[length++] = 'Q';
+            word[length++] = 'U';
+        }
+        else
+            word[length++] = (char) ('A' + letter);
+        return length;
+    }
+
+    // only a word seen for the first time since begin becomes a string
+    private void found(int node, int length) {
+        if (length > 2 && trie.isWord(node) && mark(node)) {
+            record(node);
+            words().add(new String(word, 0, length));
+        }
+    }
+
+    private void record(int node) {
+        if (count == nodes.length)
+            nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        nodes[count++] = node;
+    }
+
+    // extend word[0..length), which leads to the given trie node, by the given cell;
+    // boards of at most 64 cells keep the visited cells in one long
+    private void DFS(int cell, int length, int node, long visited) {
+        int next = step(node, letters[cell]);
+        if (next < 0)
+            return;
+        if (!viable(next, letters[cell])) {
+            skips++;
+            return;
+        }
+
+        if (scoring) {
+            // only words of more than two letters score
+            int points = trie.score(next);
+            if (points > 0 && mark(next)) {
+                score += points;
+                record(next);
+            }
+        }
+        else {
+            length = append(cell, length);
+            found(next, length);
+        }
+
+        visited |= 1L << cell;
+        for (int k = grid.start[cell]; k < grid.start[cell + 1]; k++) {
+            int neighbor = grid.neighbor[k];
+            if ((visited & 1L << neighbor) == 0)
+                DFS(neighbor, length, next, visited);
+        }
+    }
+
+    // same as above for larger boards, with the visited cells kept in a bitset
+    private void DFS(int cell, int length, int node) {
+        int next = step(node, letters[cell]);
+        if (next < 0)
+            return;
+        if (!viable(next, letters[cell])) {
+            skips++;
+            return;
+        }
+
+        if (scoring) {
+            // only words of more than two letters score
+            int points = trie.score(next);
+            if (points > 0 && mark(next)) {
+                score += points;
+                record(next);
+            }
+        }
+        else {
+            length = append(cell, length);
+            found(next, length);
+        }
+
+        visited[cell >>> 6] |= 1L << cell;
+        for (int k = grid.start[cell]; k < grid.start[cell + 1]; k++) {
+            int neighbor = grid.neighbor[k];
+            if ((visited[neighbor >>> 6] & 1L << neighbor) == 0)
+                DFS(neighbor, length, next);
+        }
+        visited[cell >>> 6] &= ~(1L << cell);
+    }
+}
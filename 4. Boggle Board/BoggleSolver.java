@@ -5,198 +5,257 @@
  *  @author:    Ying Chu
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.SET;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 
 public class BoggleSolver {
-    private static final int R = 26;  // A-Z
-    private boolean[][] visited;
-    private char[][] boardChar;
-    private Adjacent[] adjacents;
-    private int row;
-    private int col;
-    private Node root;
-
-    private static class Node
-    {
-        private boolean isWord;
-        private Node[] next = new Node[R];
-    }
-
-    private static class Adjacent
-    {
-        private int n = 0;
-        private int[] neighbor = new int[8];
-    }
+    private final BoggleTrie trie;
+    // the trie is immutable and shared, every thread searches with its own scratch state
+    private final ThreadLocal<BoggleSearch> searches;
+    private final LongAdder skipped = new LongAdder();
+    private final BoggleCache cache; // null if boards are not cached
 
 
 
     public BoggleSolver(String[] dictionary) {
-        if (dictionary == null)
-            throw new java.lang.IllegalArgumentException("the string[] is null");
+        this(new BoggleTrie(dictionary));
+    }
 
 
-        for (int i = 0; i < dictionary.length; i++)
-            addToDictionary(dictionary[i]);
+    // solver over a trie that may be shared with other solvers
+    public BoggleSolver(BoggleTrie trie) {
+        this(trie, null);
     }
 
 
-    private void addToDictionary(String word) {
-        if (word == null)
-            throw new java.lang.IllegalArgumentException("the string is null");
+    // solver that looks boards up in the given cache, if it is not null, before
+    // searching them; the cache may only be shared with solvers over the same trie
+    public BoggleSolver(BoggleTrie trie, BoggleCache cache) {
+        if (trie == null)
+            throw new java.lang.IllegalArgumentException("the trie is null");
+        if (cache != null)
+            cache.bind(trie);
 
-        root = add(root, word, 0);
+        this.trie = trie;
+        this.cache = cache;
+        searches = ThreadLocal.withInitial(() -> new BoggleSearch(trie, skipped));
     }
 
 
-    private Node add(Node x, String word, int d) {
-        if (x == null)
-            x = new Node();
+    public Iterable<String> getAllValidWords(BoggleBoard board) {
+        if (board == null)
+            throw new java.lang.IllegalArgumentException("the board is null");
 
-        if (d == word.length())
-            x.isWord = true;
-        else {
-            char c = word.charAt(d);
-            x.next[c - 'A'] = add(x.next[c - 'A'], word, d + 1);
+        String key = null;
+        if (cache != null) {
+            key = cache.key(board);
+            BoggleCache.Entry entry = cachedWords(key);
+            if (entry != null)
+                return Collections.unmodifiableList(Arrays.asList(entry.words));
         }
 
-        return x;
+        BoggleSearch search = searches.get();
+        search.load(board);
+        search.begin();
+        search.search(0, search.cells());
+        if (cache != null)
+            cache.put(key, entry(search, true));
+        return search.words();
     }
 
 
+    // total score of all valid words in the given board, without spelling any of them
+    public int scoreBoard(BoggleBoard board) {
+        if (board == null)
+            throw new java.lang.IllegalArgumentException("the board is null");
 
-    private boolean contains(String word) {
-        if (word == null)
-            throw new java.lang.IllegalArgumentException("the word is null");
+        String key = null;
+        if (cache != null) {
+            key = cache.key(board);
+            BoggleCache.Entry entry = cache.get(key);
+            if (entry != null)
+                return entry.score;
+        }
+
+        BoggleSearch search = searches.get();
+        search.load(board);
+        search.begin();
+        int score = search.score(0, search.cells());
+        if (cache != null)
+            cache.put(key, entry(search, false));
+        return score;
+    }
 
-        Node x = get(root, word, 0);
-        if (x == null)
-            return false;
-        else
-            return x.isWord;
 
+    // cache entry of the words found by the given search, spelled if the search built them
+    private BoggleCache.Entry entry(BoggleSearch search, boolean spelled) {
+        int[] nodes = new int[search.count()];
+        for (int k = 0; k < nodes.length; k++)
+            nodes[k] = search.node(k);
+        String[] words = spelled ? search.words().toArray(new String[0]) : null;
+        return entry(nodes, words);
     }
 
 
+    private BoggleCache.Entry entry(int[] nodes, String[] words) {
+        int score = 0;
+        for (int node : nodes)
+            score += trie.score(node);
+        return new BoggleCache.Entry(nodes, words, score);
+    }
 
-    private Node get(Node node, String word, int d) {
-        if (node == null)
-            return null;
-        else {
-            if (d < word.length()) {
-                char c = word.charAt(d);
-                return get(node.next[c - 'A'], word, d + 1);
-            }
-            else
-                return node;
-        }
+
+    // cached words of the given board; null if the board is not cached with its words
+    private BoggleCache.Entry cachedWords(String key) {
+        BoggleCache.Entry entry = cache.get(key);
+        return entry == null || entry.words == null ? null : entry;
     }
 
 
-    public Iterable<String> getAllValidWords(BoggleBoard board) {
+    // all valid words in the given board, with its starting cells split across the given pool
+    public Iterable<String> getAllValidWords(BoggleBoard board, ForkJoinPool pool) {
         if (board == null)
             throw new java.lang.IllegalArgumentException("the board is null");
-
-
-        if (row != board.rows() || col != board.cols()) {
-            row = board.rows();
-            col = board.cols();
-            visited = new boolean[row][col];
-            boardChar = new char[row][col];
-            computeAdj();
+        if (pool == null)
+            throw new java.lang.IllegalArgumentException("the pool is null");
+
+        String key = null;
+        if (cache != null) {
+            key = cache.key(board);
+            BoggleCache.Entry entry = cachedWords(key);
+            if (entry != null)
+                return Collections.unmodifiableList(Arrays.asList(entry.words));
         }
 
-        for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++)
-                boardChar[i][j] = board.getLetter(i, j);
-
-        SET<String> words = DFS();
+        int cells = board.rows() * board.cols();
+        int leaf = Math.max(1, cells / (4 * pool.getParallelism()));
+        List<Found> parts = pool.invoke(new StartCells(board, 0, cells, leaf));
+
+        // a word found from several starting cells is only kept once
+        BoggleSearch merge = searches.get();
+        merge.begin();
+        List<String> words = new ArrayList<>();
+        int[] nodes = new int[0];
+        int count = 0;
+        for (Found part : parts) {
+            for (int k = 0; k < part.nodes.length; k++) {
+                if (merge.mark(part.nodes[k])) {
+                    if (count == nodes.length)
+                        nodes = Arrays.copyOf(nodes, Math.max(16, 2 * count));
+                    nodes[count++] = part.nodes[k];
+                    words.add(part.words.get(k));
+                }
+            }
+        }
+        if (cache != null)
+            cache.put(key, entry(Arrays.copyOf(nodes, count), words.toArray(new String[0])));
         return words;
     }
 
 
-    private void computeAdj() {
-        adjacents = new Adjacent[row * col];
-
-        for (int i = 0; i < row; i++) {
-            for (int j = 0; j < col; j++) {
-                int index = i * col + j;
-                adjacents[index] = new Adjacent();
-
-                if (i > 0) // above
-                {
-                    // upper left
-                    if (j > 0)
-                        adjacents[index].neighbor[adjacents[index].n++] = (i - 1) * col + j - 1;
-                    // above
-                    adjacents[index].neighbor[adjacents[index].n++] = (i - 1) * col + j;
-                    // upper right
-                    if (j < col - 1)
-                        adjacents[index].neighbor[adjacents[index].n++] = (i - 1) * col + j + 1;
-                }
-                // right
-                if (j < col - 1)
-                    adjacents[index].neighbor[adjacents[index].n++] = i * col + j + 1;
-                if (i < row - 1) // below
-                {
-                    // bottom right
-                    if (j < col - 1) {
-                        adjacents[index].neighbor[adjacents[index].n++] = (i + 1) * col + j + 1;
+    // all distinct words found on any of the given boards, which are solved in parallel
+    public List<String> solveAll(Stream<BoggleBoard> boards) {
+        if (boards == null)
+            throw new java.lang.IllegalArgumentException("the stream is null");
+
+        AtomicIntegerArray seen = new AtomicIntegerArray(trie.size());
+        ConcurrentLinkedQueue<String> words = new ConcurrentLinkedQueue<>();
+        boards.parallel().forEach(board -> {
+            if (board == null)
+                throw new java.lang.IllegalArgumentException("the board is null");
+
+            String key = null;
+            if (cache != null) {
+                key = cache.key(board);
+                BoggleCache.Entry entry = cachedWords(key);
+                if (entry != null) {
+                    for (int k = 0; k < entry.nodes.length; k++) {
+                        if (seen.getAndSet(entry.nodes[k], 1) == 0)
+                            words.add(entry.words[k]);
                     }
-                    // bottom
-                    adjacents[index].neighbor[adjacents[index].n++] = (i + 1) * col + j;
-                    // bottom left
-                    if (j > 0)
-                        adjacents[index].neighbor[adjacents[index].n++] = (i + 1) * col + j - 1;
+                    return;
                 }
-                // left
-                if (j > 0)
-                    adjacents[index].neighbor[adjacents[index].n++] = i * col + j - 1;
             }
-        }
-    }
-
 
-    private SET<String> DFS() {
-        SET<String> words = new SET<>();
+            BoggleSearch search = searches.get();
+            search.load(board);
+            search.begin();
+            search.search(0, search.cells());
+            for (int k = 0; k < search.count(); k++) {
+                if (seen.getAndSet(search.node(k), 1) == 0)
+                    words.add(search.words().get(k));
+            }
+            if (cache != null)
+                cache.put(key, entry(search, true));
+        });
+        return new ArrayList<>(words);
+    }
 
-        for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++)
-                DFS(i, j, new StringBuilder(), words, root);
 
-        return words;
+    // number of trie nodes the searches did not enter because no word below them can be
+    // spelled with the letter pairs of the board
+    public long skippedNodes() {
+        return skipped.sum();
     }
 
 
-    private void DFS(int indexi, int indexj, StringBuilder pre, SET<String> words, Node node) {
-        char c = boardChar[indexi][indexj];
-        Node next = node.next[c - 'A'];
-        if (c == 'Q' && next != null)
-            next = next.next['U' - 'A'];
+    // words found from one range of starting cells
+    private static class Found {
+        private final int[] nodes;
+        private final List<String> words;
 
-        if (next == null)
-            return;
+        private Found(BoggleSearch search) {
+            nodes = new int[search.count()];
+            for (int k = 0; k < nodes.length; k++)
+                nodes[k] = search.node(k);
+            words = search.words();
+        }
+    }
 
-        if (c == 'Q')
-            pre.append("QU");
-        else
-            pre.append(c);
 
-        String string = pre.toString();
+    // searches the starting cells lo..hi-1, splitting them until at most leaf are left
+    private class StartCells extends RecursiveTask<List<Found>> {
+        private static final long serialVersionUID = 1L;
+        private final BoggleBoard board;
+        private final int lo;
+        private final int hi;
+        private final int leaf;
 
-        if (pre.length() > 2 && next.isWord)
-            words.add(string);
+        private StartCells(BoggleBoard board, int lo, int hi, int leaf) {
+            this.board = board;
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+        }
 
-        visited[indexi][indexj] = true;
+        @Override
+        protected List<Found> compute() {
+            if (hi - lo <= leaf) {
+                BoggleSearch search = searches.get();
+                search.load(board);
+                search.begin();
+                search.search(lo, hi);
+                List<Found> parts = new ArrayList<>();
+                parts.add(new Found(search));
+                return parts;
+            }
 
-        for (int i = 0; i < adjacents[indexi * col + indexj].n; i++) {
-            int indexk = adjacents[indexi * col + indexj].neighbor[i];
-            int indexrow = indexk / col;
-            int indexcol = indexk % col;
-            if (!visited[indexrow][indexcol])
-                DFS(indexrow, indexcol, new StringBuilder(pre), words, next);
+            int mid = (lo + hi) >>> 1;
+            StartCells left = new StartCells(board, lo, mid, leaf);
+            left.fork();
+            List<Found> parts = new StartCells(board, mid, hi, leaf).compute();
+            parts.addAll(0, left.join());
+            return parts;
         }
-        visited[indexi][indexj] = false;
     }
 
 
@@ -204,20 +263,10 @@ public class BoggleSolver {
         if (word == null)
             throw new java.lang.IllegalArgumentException("the word is null");
 
-        if (!contains(word))
-            return 0;
-
-        if (word.length() <= 2)
+        int node = trie.get(word);
+        if (node < 0)
             return 0;
-        else if (word.length() <= 4)
-            return 1;
-        else if (word.length() == 5)
-            return 2;
-        else if (word.length() == 6)
-            return 3;
-        else if (word.length() == 7)
-            return 5;
         else
-            return 11;
+            return trie.score(node);
     }
-}
\ No newline at end of file
+}
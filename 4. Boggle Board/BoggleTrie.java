@@ -0,0 +1,256 @@
+/* *****************************************************************************
+ *  Topic:      Boggle Trie
+ *              A compact, immutable trie over the letters A-Z for the Boggle
+ *              dictionary. Nodes are numbered in breadth-first order and the
+ *              children of a node are stored next to each other, so a node only
+ *              needs a 26-bit child mask and the number of its first child; the
+ *              child for a letter is found by counting the mask bits below it.
+ *              Word flags and scores are packed into the same int as the mask.
+ *              A trie can be saved as a binary snapshot and loaded again without
+ *              looking at the words: read into the heap in one bulk read, or
+ *              memory-mapped so that the nodes stay off the heap and every JVM
+ *              on the host shares the same pages.
+ *              Usage: java BoggleTrie dictionary.txt dictionary.trie
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class BoggleTrie {
+    private static final int MAGIC = 0x42475452;  // "BGTR"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;         // magic, version, nodes, words
+    static final int ROOT = 0;
+    private static final int R = 26;  // A-Z
+    private static final int LETTERS = (1 << R) - 1;
+    private static final int WORD = 1 << R;
+    private static final int SCORE_SHIFT = R + 1;
+
+    // two ints per node: the mask (bits 0-25: children, bit 26: a word ends here,
+    // bits 27-30: score of that word) and the number of the first child
+    private final IntBuffer nodes;
+    private final int words;
+
+    // trie of the given words, which must only contain the letters A-Z
+    public BoggleTrie(String[] dictionary) {
+        if (dictionary == null)
+            throw new java.lang.IllegalArgumentException("the string[] is null");
+
+        String[] sorted = dictionary.clone();
+        for (String word : sorted) {
+            if (word == null)
+                throw new java.lang.IllegalArgumentException("the string is null");
+            for (int d = 0; d < word.length(); d++) {
+                if (word.charAt(d) < 'A' || word.charAt(d) > 'Z')
+                    throw new java.lang.IllegalArgumentException("invalid character in " + word);
+            }
+        }
+        Arrays.sort(sorted);
+
+        // every node covers the range lo..hi of sorted words starting with its prefix;
+        // nodes are numbered in the order they are created, which is breadth-first
+        int capacity = 1;
+        for (String word : sorted) {
+            capacity += word.length();
+        }
+        int[] lo = new int[capacity];
+        int[] hi = new int[capacity];
+        int[] depth = new int[capacity];
+        int[] nodeMask = new int[capacity];
+        int[] nodeFirst = new int[capacity];
+        int nodes = 1;
+        int count = 0;
+        lo[ROOT] = 0;
+        hi[ROOT] = sorted.length;
+
+        for (int x = 0; x < nodes; x++) {
+            int i = lo[x];
+            int d = depth[x];
+            if (i < hi[x] && sorted[i].length() == d) {
+                nodeMask[x] |= WORD | scoreOfLength(d) << SCORE_SHIFT;
+                count++;
+                // skip duplicates
+                while (i < hi[x] && sorted[i].length() == d) i++;
+            }
+            nodeFirst[x] = nodes;
+            while (i < hi[x]) {
+                char c = sorted[i].charAt(d);
+                int j = i;
+                while (j < hi[x] && sorted[j].charAt(d) == c) j++;
+                nodeMask[x] |= 1 << (c - 'A');
+                lo[nodes] = i;
+                hi[nodes] = j;
+                depth[nodes] = d + 1;
+                nodes++;
+                i = j;
+            }
+        }
+
+        int[] data = new int[2 * nodes];
+        for (int x = 0; x < nodes; x++) {
+            data[2 * x] = nodeMask[x];
+            data[2 * x + 1] = nodeFirst[x];
+        }
+        this.nodes = IntBuffer.wrap(data);
+        words = count;
+    }
+
+    private BoggleTrie(IntBuffer nodes, int words) {
+        this.nodes = nodes;
+        this.words = words;
+    }
+
+    // write a snapshot of this trie to the given file
+    public void save(String path) {
+        if (path == null)
+            throw new java.lang.IllegalArgumentException("the path is null");
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 * nodes.capacity())
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(size()).putInt(words);
+        buffer.asIntBuffer().put(nodes.duplicate());
+        buffer.rewind();
+        try (FileChannel out = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                out.write(buffer);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // trie read from a snapshot into the heap
+    public static BoggleTrie load(String path) {
+        return open(path, false);
+    }
+
+    // trie of a snapshot mapped into memory; its nodes stay in the page cache, off the heap
+    public static BoggleTrie map(String path) {
+        return open(path, true);
+    }
+
+    private static BoggleTrie open(String path, boolean mapped) {
+        if (path == null)
+            throw new java.lang.IllegalArgumentException("the path is null");
+
+        Path file = Paths.get(path);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length < HEADER || length > Integer.MAX_VALUE)
+                throw new java.lang.IllegalArgumentException("not a trie snapshot: " + path);
+
+            ByteBuffer buffer;
+            if (mapped)
+                buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            else {
+                buffer = ByteBuffer.allocate((int) length);
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer) < 0)
+                        throw new java.lang.IllegalArgumentException("truncated snapshot: " + path);
+                }
+                buffer.flip();
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            int size = buffer.getInt();
+            int count = buffer.getInt();
+            if (magic != MAGIC || version != VERSION || size <= 0
+                    || length != HEADER + 8L * size)
+                throw new java.lang.IllegalArgumentException("not a trie snapshot: " + path);
+
+            IntBuffer nodes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (!mapped) {
+                // a heap trie is backed by a plain array, like a trie built from words
+                int[] data = new int[2 * size];
+                nodes.get(data);
+                nodes = IntBuffer.wrap(data);
+            }
+            return new BoggleTrie(nodes, count);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of nodes
+    public int size() {
+        return nodes.capacity() / 2;
+    }
+
+    // number of distinct words
+    public int words() {
+        return words;
+    }
+
+    // child of node for the letter c - 'A'; -1 if there is none
+    int child(int node, int letter) {
+        int m = nodes.get(2 * node);
+        int bit = 1 << letter;
+        if ((m & bit) == 0)
+            return -1;
+        return nodes.get(2 * node + 1) + Integer.bitCount(m & (bit - 1) & LETTERS);
+    }
+
+    // does a word end at node?
+    boolean isWord(int node) {
+        return (nodes.get(2 * node) & WORD) != 0;
+    }
+
+    // score of the word ending at node; 0 if none
+    int score(int node) {
+        return nodes.get(2 * node) >>> SCORE_SHIFT;
+    }
+
+    // node reached by the given word from the root; -1 if there is none
+    int get(String word) {
+        int node = ROOT;
+        for (int d = 0; d < word.length() && node >= 0; d++) {
+            char c = word.charAt(d);
+            if (c < 'A' || c > 'Z')
+                return -1;
+            node = child(node, c - 'A');
+        }
+        return node;
+    }
+
+    // score of a word of the given length
+    static int scoreOfLength(int length) {
+        if (length <= 2)
+            return 0;
+        else if (length <= 4)
+            return 1;
+        else if (length == 5)
+            return 2;
+        else if (length == 6)
+            return 3;
+        else if (length == 7)
+            return 5;
+        else
+            return 11;
+    }
+
+    // build the trie of a dictionary file and save it as a snapshot
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        String[] dictionary = in.readAllStrings();
+        BoggleTrie trie = new BoggleTrie(dictionary);
+        trie.save(args[1]);
+        StdOut.println(trie.words() + " words, " + trie.size() + " nodes written to " + args[1]);
+    }
+}
@@ -0,0 +1,335 @@
+/* *****************************************************************************
+ *  Topic:      Block Coder
+ *              Compresses one block with the whole Burrows-Wheeler pipeline,
+ *              in memory: the Burrows-Wheeler transform, move-to-front encoding,
+ *              run-length encoding of the zeros, which move-to-front leaves in
+ *              long runs, and Huffman coding of what is left.
+ *              A run of k zeros is written as k in bijective base 2, as bzip2
+ *              does, with the digits RUNA = 1 and RUNB = 2, least significant
+ *              first. Every other byte b becomes the symbol b + 1, and EOB ends
+ *              the block. The Huffman code is canonical, so it is stored as one
+ *              code length per symbol.
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class BlockCoder {
+    static final int MAGIC = 0x42575a31; // "BWZ1"
+    private static final int RUNA = 0;
+    private static final int RUNB = 1;
+    private static final int EOB = 257;
+    private static final int SYMBOLS = 258;
+    private static final int MAX_LENGTH = 24; // longest code
+
+    private BlockCoder() { }
+
+    // compressed form of block[0..length), length > 0: the row "first", the code length
+    // of every symbol and then the codes
+    static byte[] encode(byte[] block, int length) {
+        byte[] last = new byte[length];
+        int first = BurrowsWheeler.transform(block, length, last);
+        MoveToFront.encode(last, 0, length, MoveToFront.alphabet());
+
+        int[] symbols = new int[length + 1];
+        int n = 0;
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            int b = last[i] & 0xff;
+            if (b == 0) {
+                run++;
+            } else {
+                n = runs(symbols, n, run);
+                run = 0;
+                symbols[n++] = b + 1;
+            }
+        }
+        n = runs(symbols, n, run);
+        symbols[n++] = EOB;
+
+        int[] freq = new int[SYMBOLS];
+        for (int k = 0; k < n; k++) {
+            freq[symbols[k]]++;
+        }
+        int[] len = lengths(freq);
+        int[] code = codes(len);
+
+        BitWriter out = new BitWriter(n / 2 + SYMBOLS + 8);
+        out.write(first, 32);
+        for (int s = 0; s < SYMBOLS; s++) {
+            out.write(len[s], 8);
+        }
+        for (int k = 0; k < n; k++) {
+            out.write(code[symbols[k]], len[symbols[k]]);
+        }
+        return out.toByteArray();
+    }
+
+    // largest payload encode can return for a block of the given length: the row, the
+    // code lengths and at most length + 1 symbols of at most MAX_LENGTH bits each
+    static long maxPayload(int length) {
+        return 4 + SYMBOLS + ((length + 1L) * MAX_LENGTH + 7) / 8;
+    }
+
+    // write a run of zeros in bijective base 2
+    private static int runs(int[] symbols, int n, int run) {
+        while (run > 0) {
+            run--;
+            symbols[n++] = (run & 1) == 0 ? RUNA : RUNB;
+            run >>>= 1;
+        }
+        return n;
+    }
+
+    // the block of the given length compressed by encode
+    static byte[] decode(byte[] payload, int length) {
+        BitReader in = new BitReader(payload);
+        int first = in.read(32);
+        if (first < 0 || first >= length) {
+            throw new IllegalArgumentException("corrupt block: bad first row");
+        }
+        int[] len = new int[SYMBOLS];
+        for (int s = 0; s < SYMBOLS; s++) {
+            len[s] = in.read(8);
+            if (len[s] > MAX_LENGTH) {
+                throw new IllegalArgumentException("corrupt block: bad code length");
+            }
+        }
+
+        // canonical decoding: the codes of each length are consecutive numbers
+        int[] count = new int[MAX_LENGTH + 1];
+        for (int s = 0; s < SYMBOLS; s++) {
+            count[len[s]]++;
+        }
+        count[0] = 0;
+        int[] offset = new int[MAX_LENGTH + 2];
+        for (int l = 1; l <= MAX_LENGTH; l++) {
+            offset[l + 1] = offset[l] + count[l];
+        }
+        int[] sorted = new int[SYMBOLS];
+        int[] next = offset.clone();
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (len[s] > 0) sorted[next[len[s]]++] = s;
+        }
+
+        byte[] last = new byte[length];
+        int n = 0;
+        int run = 0;
+        int digit = 0;
+        while (true) {
+            // read one symbol
+            int code = 0;
+            int base = 0;  // first code of length l
+            int l = 0;
+            int symbol = -1;
+            while (symbol < 0) {
+                if (++l > MAX_LENGTH) {
+                    throw new IllegalArgumentException("corrupt block: bad code");
+                }
+                code = code << 1 | in.read(1);
+                if (code - base < count[l]) {
+                    symbol = sorted[offset[l] + code - base];
+                }
+                base = (base + count[l]) << 1;
+            }
+
+            if (symbol == RUNA || symbol == RUNB) {
+                run += (symbol + 1) << digit;
+                digit++;
+                if (run > length) {
+                    throw new IllegalArgumentException("corrupt block: too long");
+                }
+                continue;
+            }
+            if (n + run > length) {
+                throw new IllegalArgumentException("corrupt block: too long");
+            }
+            n += run;  // last is already zero
+            run = 0;
+            digit = 0;
+            if (symbol == EOB) break;
+            if (n == length) {
+                throw new IllegalArgumentException("corrupt block: too long");
+            }
+            last[n++] = (byte) (symbol - 1);
+        }
+        if (n != length) {
+            throw new IllegalArgumentException("corrupt block: too short");
+        }
+
+        MoveToFront.decode(last, 0, length, MoveToFront.alphabet());
+        byte[] block = new byte[length];
+        BurrowsWheeler.inverseTransform(last, length, first, block);
+        return block;
+    }
+
+    // Huffman code lengths for the given frequencies, at most MAX_LENGTH; symbols that
+    // do not occur get length 0
+    private static int[] lengths(int[] freq) {
+        int[] weight = freq.clone();
+        while (true) {
+            // nodes 0..SYMBOLS-1 are the symbols, the others the merged subtrees
+            int[] parent = new int[2 * SYMBOLS];
+            PriorityQueue<Long> pq = new PriorityQueue<>();
+            for (int s = 0; s < SYMBOLS; s++) {
+                if (weight[s] > 0) pq.add((long) weight[s] << 32 | s);
+            }
+            int nodes = SYMBOLS;
+            while (pq.size() > 1) {
+                long a = pq.remove();
+                long b = pq.remove();
+                parent[(int) a] = nodes;
+                parent[(int) b] = nodes;
+                pq.add(((a >>> 32) + (b >>> 32)) << 32 | nodes);
+                nodes++;
+            }
+            int root = nodes - 1;
+
+            int[] len = new int[SYMBOLS];
+            boolean fits = true;
+            for (int s = 0; s < SYMBOLS; s++) {
+                if (weight[s] == 0) continue;
+                int depth = 0;
+                for (int x = s; x != root; x = parent[x]) {
+                    depth++;
+                }
+                len[s] = depth;
+                if (depth > MAX_LENGTH) fits = false;
+            }
+            if (fits) return len;
+
+            // flatten the frequencies and try again
+            for (int s = 0; s < SYMBOLS; s++) {
+                if (weight[s] > 0) weight[s] = (weight[s] >>> 1) | 1;
+            }
+        }
+    }
+
+    // canonical codes for the given code lengths
+    private static int[] codes(int[] len) {
+        int[] code = new int[SYMBOLS];
+        int next = 0;
+        for (int l = 1; l <= MAX_LENGTH; l++) {
+            for (int s = 0; s < SYMBOLS; s++) {
+                if (len[s] == l) code[s] = next++;
+            }
+            next <<= 1;
+        }
+        return code;
+    }
+
+    // read up to n bytes into b, stopping early only at the end of the stream
+    static int readFully(InputStream in, byte[] b, int n) throws IOException {
+        int length = 0;
+        while (length < n) {
+            int read = in.read(b, length, n - length);
+            if (read < 0) break;
+            length += read;
+        }
+        return length;
+    }
+
+    // one unit of work of runAll
+    interface Task<T> {
+        void run(T job) throws IOException;
+    }
+
+    // run the task on every job, on the given number of threads
+    static <T> void runAll(List<T> jobs, int threads, Task<T> task) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (T job : jobs) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        task.run(job);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class BitWriter {
+        private byte[] out;
+        private int size;
+        private long buffer;
+        private int bits;
+
+        private BitWriter(int capacity) {
+            out = new byte[capacity];
+        }
+
+        // write the low n bits of x, most significant first
+        private void write(int x, int n) {
+            buffer = buffer << n | (x & 0xffffffffL & ((1L << n) - 1));
+            bits += n;
+            while (bits >= 8) {
+                bits -= 8;
+                if (size == out.length) out = Arrays.copyOf(out, 2 * size);
+                out[size++] = (byte) (buffer >>> bits);
+            }
+        }
+
+        private byte[] toByteArray() {
+            if (bits > 0) write(0, 8 - bits);
+            return Arrays.copyOf(out, size);
+        }
+    }
+
+    private static class BitReader {
+        private final byte[] in;
+        private long position; // in bits
+
+        private BitReader(byte[] in) {
+            this.in = in;
+        }
+
+        // the next n bits, most significant first
+        private int read(int n) {
+            int x = 0;
+            for (int i = 0; i < n; i++) {
+                int index = (int) (position >>> 3);
+                if (index >= in.length) {
+                    throw new IllegalArgumentException("corrupt block: truncated");
+                }
+                x = x << 1 | (in[index] >>> (7 - (position & 7)) & 1);
+                position++;
+            }
+            return x;
+        }
+    }
+
+    // write an int, most significant byte first
+    static void writeInt(OutputStream out, int x) throws IOException {
+        out.write(x >>> 24);
+        out.write(x >>> 16);
+        out.write(x >>> 8);
+        out.write(x);
+    }
+}
@@ -5,13 +5,75 @@
  *              1. Burrows-Wheeler Transform
  *              2. Move-to-Front Encoding
  *              3. Huffman Compression
+ *              Besides transforming its whole input at once, the transform can
+ *              work on a stream in blocks of a fixed size, as bzip2 does. Blocks
+ *              are transformed on a pool of threads and written in order, each
+ *              with its own header holding its length and its row "first".
+ *              A header of length 0 ends the stream, so a cut-off stream is
+ *              detected even when it was cut between two blocks.
+ *              The inverse follows the LF mapping through one packed int per
+ *              row, holding both the next row and its byte, so every output byte
+ *              costs a single random memory access. A block may also record the
+ *              row reached at every interval-th output position; decoding then
+ *              starts at every such checkpoint at once, on separate threads.
  *  @author:    Ying Chu
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.BinaryStdIn;
 import edu.princeton.cs.algs4.BinaryStdOut;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
 public class BurrowsWheeler {
+    // default block size of the block mode, the largest block of bzip2
+    public static final int BLOCK_SIZE = 900 * 1024;
+    // largest block size of the block mode; readers reject longer blocks
+    public static final int MAX_BLOCK_SIZE = 1 << 24;
+    // set in the length of a block header that is followed by checkpoints
+    private static final int CHECKPOINTS = 0x80000000;
+    // longest block whose rows fit in the 24 high bits of a packed link
+    private static final int PACKED = 1 << 24;
+
+    // one block: its length, its row "first", its checkpoints if any and its bytes
+    private static class Block {
+        private final byte[] data;
+        private final int length;
+        private final int first;
+        private final int[] rows;   // row at every interval-th position, null if none
+        private final int interval;
+
+        private Block(byte[] data, int length, int first) {
+            this(data, length, first, null, 0);
+        }
+
+        private Block(byte[] data, int length, int first, int[] rows, int interval) {
+            this.data = data;
+            this.length = length;
+            this.first = first;
+            this.rows = rows;
+            this.interval = interval;
+        }
+    }
+
     // apply Burrows-Wheeler transform,
     // reading from standard input and writing to standard output
     public static void transform() {
@@ -54,48 +116,338 @@ public class BurrowsWheeler {
     // reading from standard input and writing to standard output
     public static void inverseTransform() {
 
-        // read the result of the t[] array
-        int first = BinaryStdIn.readInt();
-        String lastCol = BinaryStdIn.readString();
+        try {
+            // read the result of the t[] array, as bytes
+            DataInputStream in = new DataInputStream(new BufferedInputStream(System.in, 1 << 16));
+            int first = in.readInt();
+            byte[] last = new byte[1 << 16];
+            int length = 0;
+            int read;
+            while ((read = in.read(last, length, last.length - length)) >= 0) {
+                length += read;
+                if (length == last.length) last = Arrays.copyOf(last, 2 * length);
+            }
+
+            byte[] block = new byte[length];
+            inverseTransform(last, length, first, block);
+            System.out.write(block, 0, length);
+            System.out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Burrows-Wheeler transform of block[0..length): the last column goes to last,
+    // and the row "first" is returned
+    static int transform(byte[] block, int length, byte[] last) {
+        return transform(block, length, last, null, 0);
+    }
+
+    // same as above; if rows is not null, rows[k] is set to the row of the circular
+    // suffix starting at k * interval, from which decoding can resume at that position
+    static int transform(byte[] block, int length, byte[] last, int[] rows, int interval) {
+        CircularSuffixArray cs = new CircularSuffixArray(
+                new String(block, 0, length, StandardCharsets.ISO_8859_1));
+        int first = 0;
+        for (int i = 0; i < length; i++) {
+            int index = cs.index(i);
+            if (index == 0) {
+                first = i;
+                last[i] = block[length - 1];
+            } else {
+                last[i] = block[index - 1];
+            }
+            if (rows != null && index % interval == 0) {
+                rows[index / interval] = i;
+            }
+        }
+        return first;
+    }
+
+    // inverse of the transform above: the block with last column last[0..length)
+    // and row "first" goes to block
+    static void inverseTransform(byte[] last, int length, int first, byte[] block) {
+        if (length > PACKED) {
+            inverseUnpacked(last, length, first, block);
+            return;
+        }
+        decode(links(last, length), first, block, 0, length);
+    }
 
+    // same as above, decoding the segments between the given checkpoints in parallel
+    static void inverseTransform(byte[] last, int length, int[] rows, int interval, byte[] block) {
+        if (length > PACKED) {
+            inverseUnpacked(last, length, rows[0], block);
+            return;
+        }
+        int[] link = links(last, length);
+        List<ForkJoinTask<?>> segments = new ArrayList<>();
+        for (int k = 0; k < rows.length; k++) {
+            int row = rows[k];
+            int from = k * interval;
+            int to = (int) Math.min(length, (long) from + interval);
+            segments.add(ForkJoinTask.adapt(() -> decode(link, row, block, from, to)));
+        }
+        ForkJoinTask.invokeAll(segments);
+    }
+
+    // LF mapping of the last column, one int per row: the row that comes after row r
+    // in the original order in the high 24 bits, and the byte it ends with in the low 8
+    private static int[] links(byte[] last, int length) {
         int R = 256;
-        int[] count = new int [R+1]; // used to count key-index
-        int[] next = new int[lastCol.length()];
-        char[] firstCol = new char[lastCol.length()];
+        int[] count = new int[R + 1];
+        int[] link = new int[length];
 
-        // count the character's frequency
-        for (int i = 0; i < lastCol.length(); i++) {
-            count[lastCol.charAt(i)+1]++;
+        for (int i = 0; i < length; i++) {
+            count[(last[i] & 0xff) + 1]++;
+        }
+        for (int r = 0; r < R; r++) {
+            count[r + 1] += count[r];
         }
+        for (int i = 0; i < length; i++) {
+            int c = last[i] & 0xff;
+            link[count[c]++] = i << 8 | c;
+        }
+        return link;
+    }
 
-        for(int i = 0;i < R;i++) {
-            count[i+1] += count[i];
+    // decode block[from..to), starting at the row of position from
+    private static void decode(int[] link, int row, byte[] block, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = link[row];
+            block[i] = (byte) next;
+            row = next >>> 8;
         }
+    }
+
+    // inverse for blocks too long to pack, with separate next and last arrays
+    private static void inverseUnpacked(byte[] last, int length, int first, byte[] block) {
+        int R = 256;
+        int[] count = new int[R + 1];
+        int[] next = new int[length];
 
-        for (int i = 0; i < lastCol.length(); i++) {
-            int tmp = count[lastCol.charAt(i)]++;
-            firstCol[tmp] = lastCol.charAt(i);
-            next[tmp] = i;
+        for (int i = 0; i < length; i++) {
+            count[(last[i] & 0xff) + 1]++;
+        }
+        for (int r = 0; r < R; r++) {
+            count[r + 1] += count[r];
+        }
+        for (int i = 0; i < length; i++) {
+            next[count[last[i] & 0xff]++] = i;
         }
 
-        for(int i = 0;i < lastCol.length();i++)
-        {
-            BinaryStdOut.write(firstCol[first]);
+        for (int i = 0; i < length; i++) {
             first = next[first];
+            block[i] = last[first];
         }
+    }
 
-        BinaryStdOut.close();
+    // apply the Burrows-Wheeler transform to in, block by block, on the given number
+    // of threads; every block of out is its length, its row "first" and its last column,
+    // and a length of 0 ends out
+    public static void transform(InputStream in, OutputStream out, int blockSize, int threads) {
+        transform(in, out, blockSize, threads, 0);
+    }
+
+    // same as above; if interval is positive, every block also records the row of every
+    // interval-th position, so that its inverse can be decoded in parallel. Such a block
+    // starts with its length with the top bit set, its row "first", the interval and
+    // the rows of the positions interval, 2 * interval, ...
+    public static void transform(InputStream in, OutputStream out, int blockSize, int threads,
+                                 int interval) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        if (blockSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("block size and number of threads must be positive");
+        }
+        if (blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("block size is larger than " + MAX_BLOCK_SIZE);
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("checkpoint interval is negative");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            // at most two blocks per thread are in flight
+            ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+            while (true) {
+                byte[] block = new byte[blockSize];
+                int length = readFully(in, block, blockSize);
+                if (length > 0) {
+                    pending.add(pool.submit(() -> {
+                        byte[] last = new byte[length];
+                        // a block no longer than the interval is a single segment
+                        if (interval == 0 || interval >= length) {
+                            return new Block(last, length, transform(block, length, last));
+                        }
+                        int[] rows = new int[(length - 1) / interval + 1];
+                        int first = transform(block, length, last, rows, interval);
+                        return new Block(last, length, first, rows, interval);
+                    }));
+                }
+                while (!pending.isEmpty() && (pending.size() >= 2 * threads || length < blockSize)) {
+                    Block done = pending.remove().get();
+                    if (done.rows == null) {
+                        data.writeInt(done.length);
+                        data.writeInt(done.first);
+                    } else {
+                        data.writeInt(done.length | CHECKPOINTS);
+                        data.writeInt(done.first);
+                        data.writeInt(done.interval);
+                        for (int k = 1; k < done.rows.length; k++) {
+                            data.writeInt(done.rows[k]);
+                        }
+                    }
+                    data.write(done.data, 0, done.length);
+                }
+                if (length < blockSize) break;
+            }
+            data.writeInt(0); // end of the stream
+            data.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // invert the block transform above on the given number of threads; blocks with
+    // checkpoints are also split into segments that are decoded in parallel
+    public static void inverseTransform(InputStream in, OutputStream out, int threads) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
 
+        // a fork-join pool lets a block wait for its segments without blocking a thread
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+            ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+            boolean more = true;
+            while (more || !pending.isEmpty()) {
+                Block block = more ? readBlock(data) : null;
+                if (block == null) {
+                    more = false;
+                } else {
+                    pending.add(pool.submit(() -> {
+                        byte[] original = new byte[block.length];
+                        if (block.rows == null) {
+                            inverseTransform(block.data, block.length, block.first, original);
+                        } else {
+                            inverseTransform(block.data, block.length, block.rows, block.interval,
+                                             original);
+                        }
+                        return new Block(original, block.length, block.first);
+                    }));
+                }
+                while (!pending.isEmpty() && (pending.size() >= 2 * threads || !more)) {
+                    Block done = pending.remove().get();
+                    buffered.write(done.data, 0, done.length);
+                }
+            }
+            buffered.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // the next block of the block format; null at the header of length 0 that ends it
+    private static Block readBlock(DataInputStream data) throws IOException {
+        try {
+            int length = data.readInt();
+            if (length == 0) {
+                return null;
+            }
+            boolean checkpoints = (length & CHECKPOINTS) != 0;
+            length &= ~CHECKPOINTS;
+            // check the sizes before allocating anything for them
+            if (length < 1 || length > MAX_BLOCK_SIZE) {
+                throw new IllegalArgumentException("malformed block header");
+            }
+            int first = data.readInt();
+            if (first < 0 || first >= length) {
+                throw new IllegalArgumentException("malformed block header");
+            }
+            int[] rows = null;
+            int interval = 0;
+            if (checkpoints) {
+                interval = data.readInt();
+                if (interval < 1 || interval > length) {
+                    throw new IllegalArgumentException("malformed block header");
+                }
+                rows = new int[(length - 1) / interval + 1];
+                rows[0] = first;
+                for (int k = 1; k < rows.length; k++) {
+                    rows[k] = data.readInt();
+                    if (rows[k] < 0 || rows[k] >= length) {
+                        throw new IllegalArgumentException("malformed block header");
+                    }
+                }
+            }
+            byte[] last = new byte[length];
+            data.readFully(last);
+            return new Block(last, length, first, rows, interval);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("truncated", e);
+        }
+    }
+
+    // read up to n bytes into b, stopping early only at the end of the stream
+    private static int readFully(InputStream in, byte[] b, int n) throws IOException {
+        int length = 0;
+        while (length < n) {
+            int read = in.read(b, length, n - length);
+            if (read < 0) break;
+            length += read;
+        }
+        return length;
     }
 
     // if args[0] is "-", apply Burrows-Wheeler transform
     // if args[0] is "+", apply Burrows-Wheeler inverse transform
+    // if args[0] is "-b", apply the transform in blocks of args[1] KB (default 900),
+    //     with a checkpoint every args[2] KB if given
+    // if args[0] is "+b", apply the inverse transform of the block mode
     public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
         if ("-".equals(args[0])) {
             BurrowsWheeler.transform();
         }
         else if ("+".equals(args[0])) {
             BurrowsWheeler.inverseTransform();
         }
+        else if ("-b".equals(args[0])) {
+            int blockSize = args.length > 1 ? Integer.parseInt(args[1]) * 1024 : BLOCK_SIZE;
+            int interval = args.length > 2 ? Integer.parseInt(args[2]) * 1024 : 0;
+            BurrowsWheeler.transform(System.in, System.out, blockSize, threads, interval);
+        }
+        else if ("+b".equals(args[0])) {
+            BurrowsWheeler.inverseTransform(System.in, System.out, threads);
+        }
     }
 }
@@ -4,6 +4,11 @@
  *              array of the n circular suffixes of a string of length n, which
  *              help efficiently implement the key component in the Burrows-
  *              Wheeler transform.
+ *              The suffixes are sorted by prefix doubling: once they are sorted
+ *              by their first len characters, a stable counting sort by the
+ *              ranks of their two halves sorts them by their first 2 * len
+ *              characters, so sorting takes O(n log n) time even on highly
+ *              repetitive input, and the result is a plain int[].
  *  @author:    Ying Chu
  **************************************************************************** */
 
@@ -11,7 +16,7 @@ import java.util.Arrays;
 
 public class CircularSuffixArray {
 
-    private final Integer[] index;
+    private final int[] index;
     private final int size;
 
     // circular suffix array of s
@@ -21,23 +26,93 @@ public class CircularSuffixArray {
         }
 
         size = s.length();
-        index = new Integer[size];
+        index = sort(s);
+    }
+
+    // starting points of the circular suffixes of s in sorted order; equal suffixes,
+    // which only occur in periodic strings, are ordered by their starting point
+    private static int[] sort(String s) {
+        int n = s.length();
+        int[] order = new int[n];
+        int[] rank = new int[n];
+        if (n == 0) {
+            return order;
+        }
+
+        int R = 0;
+        for (int i = 0; i < n; i++) {
+            R = Math.max(R, s.charAt(i) + 1);
+        }
+        int[] count = new int[Math.max(R, n) + 1];
 
-        for (int i = 0; i < size; i++) {
-            index[i] = i;
+        // sort by the first character
+        for (int i = 0; i < n; i++) {
+            count[s.charAt(i) + 1]++;
         }
+        for (int r = 0; r < R; r++) {
+            count[r + 1] += count[r];
+        }
+        for (int i = 0; i < n; i++) {
+            order[count[s.charAt(i)]++] = i;
+        }
+        int classes = 1;
+        rank[order[0]] = 0;
+        for (int k = 1; k < n; k++) {
+            if (s.charAt(order[k]) != s.charAt(order[k - 1])) classes++;
+            rank[order[k]] = classes - 1;
+        }
+
+        // rank[i] is the class of suffix i among the suffixes sorted by their first len
+        // characters; a suffix starting len earlier has the second half i
+        int[] shifted = new int[n];
+        int[] nextRank = new int[n];
+        for (int len = 1; len < n && classes < n; len <<= 1) {
+            // ordered by second half
+            for (int k = 0; k < n; k++) {
+                shifted[k] = order[k] - len < 0 ? order[k] - len + n : order[k] - len;
+            }
 
-        Arrays.sort(index, (t1, t2) -> {
-            for (int i = 0; i < size; i++) {
-                char c1 = s.charAt((t1 + i) % size);
-                char c2 = s.charAt((t2 + i) % size);
+            // stable counting sort by first half
+            Arrays.fill(count, 0, classes + 1, 0);
+            for (int k = 0; k < n; k++) {
+                count[rank[shifted[k]] + 1]++;
+            }
+            for (int r = 0; r < classes; r++) {
+                count[r + 1] += count[r];
+            }
+            for (int k = 0; k < n; k++) {
+                order[count[rank[shifted[k]]]++] = shifted[k];
+            }
 
-                if (c1 < c2) return -1;
-                if (c1 > c2) return 1;
+            classes = 1;
+            nextRank[order[0]] = 0;
+            for (int k = 1; k < n; k++) {
+                int cur = order[k];
+                int prev = order[k - 1];
+                int curHalf = cur + len < n ? cur + len : cur + len - n;
+                int prevHalf = prev + len < n ? prev + len : prev + len - n;
+                if (rank[cur] != rank[prev] || rank[curHalf] != rank[prevHalf]) classes++;
+                nextRank[cur] = classes - 1;
             }
-            return t1.compareTo(t2);
-        });
+            int[] swap = rank;
+            rank = nextRank;
+            nextRank = swap;
+        }
 
+        // put equal suffixes in the order of their starting points
+        if (classes < n) {
+            Arrays.fill(count, 0, classes + 1, 0);
+            for (int i = 0; i < n; i++) {
+                count[rank[i] + 1]++;
+            }
+            for (int r = 0; r < classes; r++) {
+                count[r + 1] += count[r];
+            }
+            for (int i = 0; i < n; i++) {
+                order[count[rank[i]]++] = i;
+            }
+        }
+        return order;
     }
 
     // length of s
@@ -0,0 +1,130 @@
+/* *****************************************************************************
+ *  Topic:      Compressor
+ *              Compresses a stream with the Burrows-Wheeler pipeline in process,
+ *              without going through standard input and output between the
+ *              stages. The input is cut into blocks and every block is coded on
+ *              its own. The output is a self-describing container:
+ *              header:  magic "BWZ1", block size
+ *              blocks:  original length, CRC-32 of the original, payload length,
+ *                       payload
+ *              end:     0, CRC-32 of the whole stream
+ *              A compressor keeps no state between calls, so any number of
+ *              streams can be compressed at once.
+ *              Usage: java Compressor < input > output
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class Compressor {
+    // largest block size, the same as the block mode of BurrowsWheeler
+    public static final int MAX_BLOCK_SIZE = BurrowsWheeler.MAX_BLOCK_SIZE;
+
+    private final int blockSize;
+    private final int threads;
+
+    // one stream to be compressed or decompressed, from in to out
+    public static class Job {
+        private final InputStream in;
+        private final OutputStream out;
+
+        public Job(InputStream in, OutputStream out) {
+            if (in == null || out == null) {
+                throw new IllegalArgumentException("stream is null");
+            }
+            this.in = in;
+            this.out = out;
+        }
+
+        InputStream in() {
+            return in;
+        }
+
+        OutputStream out() {
+            return out;
+        }
+    }
+
+    // compressor with the default block size, running compressAll on one thread per core
+    public Compressor() {
+        this(BurrowsWheeler.BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    // compressor with the given block size, running compressAll on the given number of threads
+    public Compressor(int blockSize, int threads) {
+        if (blockSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("block size and number of threads must be positive");
+        }
+        if (blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("block size is larger than " + MAX_BLOCK_SIZE);
+        }
+        this.blockSize = blockSize;
+        this.threads = threads;
+    }
+
+    // compress in to out on the calling thread; out is flushed but not closed
+    public void compress(InputStream in, OutputStream out) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        try {
+            InputStream input = new BufferedInputStream(in, 1 << 16);
+            OutputStream output = new BufferedOutputStream(out, 1 << 16);
+            BlockCoder.writeInt(output, BlockCoder.MAGIC);
+            BlockCoder.writeInt(output, blockSize);
+
+            CRC32 total = new CRC32();
+            byte[] block = new byte[blockSize];
+            int length;
+            while ((length = BlockCoder.readFully(input, block, blockSize)) > 0) {
+                CRC32 crc = new CRC32();
+                crc.update(block, 0, length);
+                total.update(block, 0, length);
+                byte[] payload = BlockCoder.encode(block, length);
+
+                BlockCoder.writeInt(output, length);
+                BlockCoder.writeInt(output, (int) crc.getValue());
+                BlockCoder.writeInt(output, payload.length);
+                output.write(payload);
+                if (length < blockSize) break;
+            }
+            BlockCoder.writeInt(output, 0);
+            BlockCoder.writeInt(output, (int) total.getValue());
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // compressed form of data
+    public byte[] compress(byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data is null");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        compress(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    // compress every job, running independent streams at once on the thread pool
+    public void compressAll(List<Job> jobs) {
+        if (jobs == null) {
+            throw new IllegalArgumentException("jobs is null");
+        }
+        BlockCoder.runAll(jobs, threads, job -> compress(job.in(), job.out()));
+    }
+
+    // compress standard input to standard output
+    public static void main(String[] args) {
+        new Compressor().compress(System.in, System.out);
+    }
+}
@@ -0,0 +1,111 @@
+/* *****************************************************************************
+ *  Topic:      Decompressor
+ *              Restores streams written by Compressor, checking the container
+ *              header and the CRC-32 of every block and of the whole stream.
+ *              A decompressor keeps no state between calls, so any number of
+ *              streams can be decompressed at once.
+ *              Usage: java Decompressor < input > output
+ *  @author:    Ying Chu
+ **************************************************************************** */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class Decompressor {
+    private final int threads;
+
+    // decompressor running decompressAll on one thread per core
+    public Decompressor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // decompressor running decompressAll on the given number of threads
+    public Decompressor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    // decompress in to out on the calling thread; out is flushed but not closed
+    public void decompress(InputStream in, OutputStream out) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            OutputStream output = new BufferedOutputStream(out, 1 << 16);
+            if (input.readInt() != BlockCoder.MAGIC) {
+                throw new IllegalArgumentException("not a compressed stream");
+            }
+            int blockSize = input.readInt();
+            if (blockSize < 1 || blockSize > Compressor.MAX_BLOCK_SIZE) {
+                throw new IllegalArgumentException("corrupt stream: bad block size");
+            }
+
+            CRC32 total = new CRC32();
+            int length;
+            while ((length = input.readInt()) != 0) {
+                int checksum = input.readInt();
+                int size = input.readInt();
+                // check the sizes before allocating anything for them
+                if (length < 0 || length > blockSize || size < 0
+                        || size > BlockCoder.maxPayload(length)) {
+                    throw new IllegalArgumentException("corrupt stream: bad block header");
+                }
+                byte[] payload = new byte[size];
+                input.readFully(payload);
+
+                byte[] block = BlockCoder.decode(payload, length);
+                CRC32 crc = new CRC32();
+                crc.update(block, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IllegalArgumentException("corrupt stream: block checksum mismatch");
+                }
+                total.update(block, 0, length);
+                output.write(block, 0, length);
+            }
+            if ((int) total.getValue() != input.readInt()) {
+                throw new IllegalArgumentException("corrupt stream: checksum mismatch");
+            }
+            output.flush();
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("corrupt stream: truncated", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // original form of compressed data
+    public byte[] decompress(byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data is null");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 * data.length);
+        decompress(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    // decompress every job, running independent streams at once on the thread pool
+    public void decompressAll(List<Compressor.Job> jobs) {
+        if (jobs == null) {
+            throw new IllegalArgumentException("jobs is null");
+        }
+        BlockCoder.runAll(jobs, threads, job -> decompress(job.in(), job.out()));
+    }
+
+    // decompress standard input to standard output
+    public static void main(String[] args) {
+        new Decompressor().decompress(System.in, System.out);
+    }
+}
@@ -1,59 +1,135 @@
+/* *****************************************************************************
+ *  Topic:      Move-to-Front
+ *              Move-to-front encoding keeps the 256 byte values in a list and
+ *              replaces every byte by its position in the list, then moves it
+ *              to the front. The list is a byte[256] shifted with arraycopy, and
+ *              bytes are encoded in place over whole buffers, so streams are
+ *              processed a buffer at a time.
+ *  @author:    Ying Chu
+ **************************************************************************** */
 
-import edu.princeton.cs.algs4.BinaryStdIn;
-import edu.princeton.cs.algs4.BinaryStdOut;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 
 public class MoveToFront {
+    private static final int R = 256;
+    private static final int BUFFER = 1 << 16;
 
-    // apply move-to-front encoding, reading from standard input and writing to standard output
-    public static void encode() {
-
-        LinkedList<Character> asciiList = new LinkedList<>();
-        for (char c = 0; c < 256; c++) {
-            asciiList.add(c);
+    // the list of byte values in its initial order
+    static byte[] alphabet() {
+        byte[] list = new byte[R];
+        for (int c = 0; c < R; c++) {
+            list[c] = (byte) c;
         }
+        return list;
+    }
 
-        while (!BinaryStdIn.isEmpty()) {
-            // We expect each character to be 8 bit.
-            // Make the character equal to the extended ASCII character
-            char character = BinaryStdIn.readChar();
+    // encode a[off..off+len) in place, starting from and updating the given list
+    static void encode(byte[] a, int off, int len, byte[] list) {
+        for (int i = off; i < off + len; i++) {
+            byte character = a[i];
 
             // get the location of such character in the list
-            int index = asciiList.indexOf(character);
-
-            // record the 8 least-significant bits of the character's location
-            BinaryStdOut.write(index, 8);
+            int index = 0;
+            while (list[index] != character) {
+                index++;
+            }
+            a[i] = (byte) index;
 
             // move the character to the front
-            asciiList.remove(index);
-            asciiList.addFirst(character);
-
+            System.arraycopy(list, 0, list, 1, index);
+            list[0] = character;
         }
-        BinaryStdOut.close();
     }
 
-    // apply move-to-front decoding, reading from standard input and writing to standard output
-    public static void decode() {
-        // Initialize an ordered sequence of 256 ascii characters
-        LinkedList<Character> asciiList = new LinkedList<>();
-        for (char c = 0; c < 256; c++) {
-            asciiList.add(c);
+    // decode a[off..off+len) in place, starting from and updating the given list
+    static void decode(byte[] a, int off, int len, byte[] list) {
+        for (int i = off; i < off + len; i++) {
+            // the character is treated as an index
+            int index = a[i] & 0xff;
+            byte character = list[index];
+            a[i] = character;
+
+            // move the character to the front
+            System.arraycopy(list, 0, list, 1, index);
+            list[0] = character;
         }
+    }
 
-        while (!BinaryStdIn.isEmpty()) {
+    // encode the remaining bytes of the buffer in place
+    public static void encode(ByteBuffer buffer) {
+        transform(buffer, true);
+    }
 
-            // the character is treated as an index
-            int index = BinaryStdIn.readChar();
+    // decode the remaining bytes of the buffer in place
+    public static void decode(ByteBuffer buffer) {
+        transform(buffer, false);
+    }
 
-            // record the index's corresponding character in the sequence
-            char character = asciiList.get(index);
-            BinaryStdOut.write(character);
+    private static void transform(ByteBuffer buffer, boolean encode) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer is null");
+        }
+        byte[] list = alphabet();
+        if (buffer.hasArray()) {
+            int off = buffer.arrayOffset() + buffer.position();
+            if (encode) encode(buffer.array(), off, buffer.remaining(), list);
+            else decode(buffer.array(), off, buffer.remaining(), list);
+            return;
+        }
+        byte[] a = new byte[Math.min(BUFFER, buffer.remaining())];
+        for (int p = buffer.position(); p < buffer.limit(); p += a.length) {
+            int len = Math.min(a.length, buffer.limit() - p);
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.position(p);
+            chunk.get(a, 0, len);
+            if (encode) encode(a, 0, len, list);
+            else decode(a, 0, len, list);
+            chunk.position(p);
+            chunk.put(a, 0, len);
+        }
+    }
 
-            // move the character to the front
-            asciiList.remove(index);
-            asciiList.addFirst(character);
+    // apply move-to-front encoding, reading from in and writing to out
+    public static void encode(InputStream in, OutputStream out) {
+        transform(in, out, true);
+    }
+
+    // apply move-to-front decoding, reading from in and writing to out
+    public static void decode(InputStream in, OutputStream out) {
+        transform(in, out, false);
+    }
+
+    private static void transform(InputStream in, OutputStream out, boolean encode) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        byte[] list = alphabet();
+        byte[] a = new byte[BUFFER];
+        try {
+            int len;
+            while ((len = in.read(a)) >= 0) {
+                if (encode) encode(a, 0, len, list);
+                else decode(a, 0, len, list);
+                out.write(a, 0, len);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        BinaryStdOut.close();
+    }
+
+    // apply move-to-front encoding, reading from standard input and writing to standard output
+    public static void encode() {
+        encode(System.in, System.out);
+    }
+
+    // apply move-to-front decoding, reading from standard input and writing to standard output
+    public static void decode() {
+        decode(System.in, System.out);
     }
 
     // if args[0] is "-", apply move-to-front encoding